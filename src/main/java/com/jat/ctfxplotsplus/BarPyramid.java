@@ -0,0 +1,133 @@
+package com.jat.ctfxplotsplus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A multi-resolution pyramid of merged bars (OHLC mipmaps) built over a {@link BarSource}.
+ *
+ * <p>Level {@code k} holds one bar for every {@code 2^k} base bars, level 0 is the base series itself.
+ * A merged bar takes the time and open of its first bar, the highest high, the lowest low, the close of
+ * its last bar and the summed volume. Each level is merged from the two child bars of the level below,
+ * so keeping the pyramid current costs O(levels) per appended base bar. A late bar inserted into the base only
+ * re-merges the bars from its position on, a full rebuild only follows a reorder or clear of the base.</p>
+ *
+ * <p>Levels are only built once {@link #levelFor(int, double)} asks for them, so a chart that never zooms out
+ * past one bar per pixel keeps no merged bars at all and creating a pyramid costs nothing. Levels are stored in
+ * {@link BarSource#derived()} sources of the base, temporary {@link MappedBarStore}s for a memory-mapped base, so
+ * zooming out over a mapped history keeps it off the heap. {@link #close()} releases them.</p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * BarPyramid pyramid = new BarPyramid(bars);
+ * pyramid.sync(); // after bars were appended
+ * int level = pyramid.levelFor(visibleBars, axisWidthPixels);
+ * BarSource merged = pyramid.level(level);
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class BarPyramid {
+    public static final int MAX_LEVELS = 24;
+
+    private final BarSource base;
+    private final List<BarSource> levels = new ArrayList<>(); // Merged levels 1 and up, of the kind of the base
+    private int covered = 0; // Number of base bars merged into the levels
+    private int baseVersion;
+    private int baseChanges;
+
+    public BarPyramid(BarSource base) {
+        this.base = base;
+        this.baseVersion = base.version();
+        this.baseChanges = base.changeCount();
+        this.covered = base.size(); // Nothing is merged until a level is asked for
+    }
+
+    public BarSource level(int level) {
+        return level == 0 ? base : levels.get(level - 1);
+    }
+
+    // Number of levels built so far, including the base
+    public int levelCount() {
+        return levels.size() + 1;
+    }
+
+    // Picks the coarsest level that still gives at least one pixel per bar, building it when needed
+    public int levelFor(int visibleBars, double pixels) {
+        int level = 0;
+        while (level + 1 < MAX_LEVELS && base.size() > (1 << (level + 1)) && (visibleBars >> level) > pixels) {
+            level++;
+        }
+        while (levelCount() <= level) {
+            addLevel();
+        }
+        return level;
+    }
+
+    // Brings every built level up to date with the base series, from the lowest base bar that changed
+    public void sync() {
+        if (base.version() != baseVersion) {
+            for (BarSource level : levels) {
+                level.clear();
+            }
+            covered = 0;
+            baseVersion = base.version();
+            baseChanges = base.changeCount();
+        }
+        // The last covered bar is merged again because the forming bar may have been amended
+        int from = Math.max(0, covered - 1);
+        if (base.changeCount() != baseChanges) {
+            from = Math.min(from, base.changedFrom(baseChanges)); // Late bars moved everything after them
+            baseChanges = base.changeCount();
+        }
+        int size = base.size();
+        for (int k = 1; k < levelCount(); k++) {
+            for (int g = from >> k; (g << k) < size; g++) {
+                merge(k, g);
+            }
+        }
+        covered = size;
+    }
+
+    // Releases the levels, the temporary files of a memory-mapped base are deleted
+    public void close() {
+        for (BarSource level : levels) {
+            MappedBarStore.release(level);
+        }
+        levels.clear();
+    }
+
+    // Builds the next coarser level from the covered bars of the level below
+    private void addLevel() {
+        levels.add(base.derived());
+        int k = levelCount() - 1;
+        for (int g = 0; (g << k) < covered; g++) {
+            merge(k, g);
+        }
+    }
+
+    // Recomputes bar g of level k from bars 2g and 2g + 1 of level k - 1
+    private void merge(int k, int g) {
+        BarSource child = level(k - 1);
+        BarSource level = levels.get(k - 1);
+        int first = g << 1;
+        if (first >= child.size()) {
+            return;
+        }
+        int last = Math.min(first + 1, child.size() - 1);
+        long time = child.time(first);
+        double open = child.open(first);
+        double high = Math.max(child.high(first), child.high(last));
+        double low = Math.min(child.low(first), child.low(last));
+        double close = child.close(last);
+        double volume = last == first ? child.volume(first) : child.volume(first) + child.volume(last);
+        if (g < level.size()) {
+            level.set(g, time, open, high, low, close, volume);
+        } else {
+            level.append(time, open, high, low, close, volume);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.jat.ctfxplotsplus;
+
+import java.util.Arrays;
+
+/**
+ * A thread-safe hand-off of bar updates from feed threads to the FX thread.
+ *
+ * <p>Producers {@link #offer(long, double, double, double, double, double)} bars from any thread; the chart
+ * {@link #drain(Sink)}s everything queued since the last pulse on the FX thread. Bars are kept in primitive arrays
+ * that are reused after each drain, so a steady stream of updates does not allocate. The time the oldest queued bar
+ * has been waiting is recorded, which gives the lag between an update and the frame that draws it.</p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * queue.offer(epochMillis, open, high, low, close, volume); // feed thread
+ * queue.drain((t, o, h, l, c, v) -> bars.upsert(t, o, h, l, c, v)); // FX thread
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class BarQueue {
+
+    @FunctionalInterface
+    public interface Sink {
+        void accept(long epochMillis, double open, double high, double low, double close, double volume);
+    }
+
+    // Producers fill the front buffer, a drain swaps it with the back buffer and reads that outside the lock
+    private static final class Buffer {
+        long[] times = new long[64];
+        double[] opens = new double[64];
+        double[] highs = new double[64];
+        double[] lows = new double[64];
+        double[] closes = new double[64];
+        double[] volumes = new double[64];
+        int count = 0;
+    }
+
+    private Buffer front = new Buffer();
+    private Buffer back = new Buffer();
+    private long oldestOfferNanos = 0;
+    private volatile long lastWaitNanos = 0;
+
+    public synchronized void offer(long epochMillis, double open, double high, double low, double close, double volume) {
+        Buffer buffer = front;
+        int count = buffer.count;
+        if (count == buffer.times.length) {
+            int capacity = count * 2;
+            buffer.times = Arrays.copyOf(buffer.times, capacity);
+            buffer.opens = Arrays.copyOf(buffer.opens, capacity);
+            buffer.highs = Arrays.copyOf(buffer.highs, capacity);
+            buffer.lows = Arrays.copyOf(buffer.lows, capacity);
+            buffer.closes = Arrays.copyOf(buffer.closes, capacity);
+            buffer.volumes = Arrays.copyOf(buffer.volumes, capacity);
+        }
+        if (count == 0) {
+            oldestOfferNanos = System.nanoTime();
+        }
+        buffer.times[count] = epochMillis;
+        buffer.opens[count] = open;
+        buffer.highs[count] = high;
+        buffer.lows[count] = low;
+        buffer.closes[count] = close;
+        buffer.volumes[count] = volume;
+        buffer.count = count + 1;
+    }
+
+    /**
+     * Hands every queued bar to the sink in arrival order and returns how many there were. Only the buffer swap
+     * holds the lock, so producers keep offering while the sink runs. Drain from one thread only.
+     */
+    public int drain(Sink sink) {
+        Buffer drained;
+        synchronized (this) {
+            drained = front;
+            if (drained.count == 0) {
+                return 0;
+            }
+            front = back;
+            back = drained;
+            lastWaitNanos = System.nanoTime() - oldestOfferNanos;
+        }
+        int count = drained.count;
+        try {
+            for (int i = 0; i < count; i++) {
+                sink.accept(drained.times[i], drained.opens[i], drained.highs[i], drained.lows[i], drained.closes[i],
+                        drained.volumes[i]);
+            }
+        } finally {
+            // Reused as the front buffer by the next drain, which swaps under the lock. A throwing sink does not
+            // get the same bars again
+            drained.count = 0;
+        }
+        return count;
+    }
+
+    public synchronized int size() {return front.count;}
+
+    // How long the oldest bar of the last drain waited in the queue
+    public long getLastWaitNanos() {return lastWaitNanos;}
+}
@@ -0,0 +1,130 @@
+package com.jat.ctfxplotsplus;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rolls a base series up into coarser timeframes and keeps every rolled-up series cached and current.
+ *
+ * <p>A rolled-up bar takes the time of its {@link Timeframe} bucket, the open of its first base bar, the highest
+ * high, the lowest low, the close of its last base bar and the summed volume. The first request for a timeframe
+ * rolls the whole base series once; after that {@link #sync()} only re-rolls the last bucket of every cached
+ * timeframe and whatever base bars arrived since, so switching timeframes costs nothing and a live update costs
+ * one bucket per timeframe. A bar inserted into the middle of the base (a late bar) re-rolls every bucket from its
+ * own on, only a reorder or clear of the base rebuilds the caches. Rolled-up series are {@link BarSource#derived()}
+ * sources of the base, so the timeframes of a memory-mapped base are mapped as well.</p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * BarResampler resampler = new BarResampler(minuteBars);
+ * BarSource hourly = resampler.series(Timeframe.H1);
+ * minuteBars.upsert(time, open, high, low, close, volume);
+ * resampler.sync(); // hourly is up to date again
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class BarResampler {
+    public final BarSource base;
+
+    private final Map<Timeframe, Rollup> rollups = new LinkedHashMap<>();
+
+    // A cached timeframe and the base index its last bucket starts at
+    private static class Rollup {
+        final Timeframe timeframe;
+        final BarSource series;
+        int lastBucketFirst = 0;
+        int baseVersion;
+        int baseChanges;
+
+        Rollup(Timeframe timeframe, BarSource series, int baseVersion) {
+            this.timeframe = timeframe;
+            this.series = series;
+            this.baseVersion = baseVersion;
+        }
+    }
+
+    public BarResampler(BarSource base) {
+        this.base = base;
+    }
+
+    // The rolled-up series of a timeframe, built on first use and cached
+    public BarSource series(Timeframe timeframe) {
+        Rollup rollup = rollups.get(timeframe);
+        if (rollup == null) {
+            rollup = new Rollup(timeframe, base.derived(), base.version());
+            rollup.baseChanges = base.changeCount();
+            rollups.put(timeframe, rollup);
+        }
+        roll(rollup);
+        return rollup.series;
+    }
+
+    public boolean isCached(Timeframe timeframe) {
+        return rollups.containsKey(timeframe);
+    }
+
+    // Drops a cached timeframe
+    public void evict(Timeframe timeframe) {
+        Rollup rollup = rollups.remove(timeframe);
+        if (rollup != null) {
+            MappedBarStore.release(rollup.series);
+        }
+    }
+
+    // Drops every cached timeframe, the temporary files of a memory-mapped base are deleted
+    public void close() {
+        for (Rollup rollup : rollups.values()) {
+            MappedBarStore.release(rollup.series);
+        }
+        rollups.clear();
+    }
+
+    // Brings every cached timeframe up to date with the base series
+    public void sync() {
+        for (Rollup rollup : rollups.values()) {
+            roll(rollup);
+        }
+    }
+
+    private void roll(Rollup rollup) {
+        base.ensureSorted();
+        if (base.version() != rollup.baseVersion) {
+            rollup.series.clear();
+            rollup.lastBucketFirst = 0;
+            rollup.baseVersion = base.version();
+            rollup.baseChanges = base.changeCount();
+        }
+        Timeframe timeframe = rollup.timeframe;
+        int size = base.size();
+        // The last bucket is rolled again from its first base bar, it may have grown or been amended
+        int i = Math.min(rollup.lastBucketFirst, size);
+        if (base.changeCount() != rollup.baseChanges) {
+            // Late bars: every bucket from the one of the lowest changed bar on is rolled again
+            int changed = base.changedFrom(rollup.baseChanges);
+            if (changed < size) {
+                i = Math.min(i, base.indexAtOrAfter(timeframe.bucketStart(base.time(changed))));
+            }
+            rollup.baseChanges = base.changeCount();
+        }
+        while (i < size) {
+            long bucket = timeframe.bucketStart(base.time(i));
+            int end = base.indexAtOrAfter(bucket + timeframe.intervalMillis);
+            double volume = 0;
+            for (int j = i; j < end; j++) {
+                volume += base.volume(j);
+            }
+            double open = base.open(i);
+            int r = rollup.series.upsert(bucket, open, base.maxHigh(i, end), base.minLow(i, end), base.close(end - 1), volume);
+            if (rollup.series.open(r) != open) {
+                // Upsert keeps the open of an existing bar, a late bar at the start of the bucket replaces it
+                rollup.series.set(r, bucket, open, rollup.series.high(r), rollup.series.low(r), rollup.series.close(r), volume);
+            }
+            rollup.lastBucketFirst = i;
+            i = end;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.jat.ctfxplotsplus;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A columnar (struct-of-arrays) store of OHLC bars used as the backing data of the {@link OHLCChart}.
+ *
+ * <p>Each bar is kept as an epoch-millisecond timestamp in a {@code long} column and five {@code double}
+ * columns for open, high, low, close and volume. Columns grow in fixed size chunks so appending never copies
+ * existing bars and never allocates per bar. A bar costs 48 bytes, compared to a few hundred bytes for an
+ * {@link OHLCData} object with its {@link java.time.LocalDateTime} and chart data point.</p>
+ *
+ * <p>Features:
+ * <ul>
+ * <li>Allocation free appends, new chunks are only created every {@value #CHUNK_SIZE} bars.</li>
+ * <li>Direct primitive access to every column by bar index.</li>
+ * <li>Binary search from a time to a bar index, the series is kept in chronological order.</li>
+ * <li>{@link OHLCData} views of single bars on demand through {@link #get(int)}.</li>
+ * <li>Implements {@link BarSource}, the read side shared with the memory-mapped {@link MappedBarStore}.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * BarSeries bars = new BarSeries("AAPL");
+ * bars.append(BarSeries.toEpochMillis(timestamp), open, high, low, close, volume);
+ * double close = bars.close(bars.size() - 1);
+ * }
+ * </pre>
+ * </p>
+ *
+ * <p>Timestamps are stored as UTC epoch milliseconds, matching the {@link ZoneOffset#UTC} conversion used by the axes.</p>
+ *
+ * @author Aidan Korczynski
+ */
+public class BarSeries implements BarSource {
+    public static final int CHUNK_SHIFT = 14;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    public static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    public String symbol;
+    private long[][] times = new long[0][];
+    private double[][] opens = new double[0][];
+    private double[][] highs = new double[0][];
+    private double[][] lows = new double[0][];
+    private double[][] closes = new double[0][];
+    private double[][] volumes = new double[0][];
+    private int size = 0;
+    private boolean sorted = true;
+    private int version = 0; // Bumped when bars are reordered or cleared, lets derived data detect a rebuild
+    private final ChangeLog changes = new ChangeLog(); // Late inserts and amends, derived data rebuilds from them
+
+    public BarSeries() {
+        this(null);
+    }
+
+    public BarSeries(String symbol) {
+        this.symbol = symbol;
+    }
+
+    // Copy a list of OHLCData objects into a new columnar series
+    public static BarSeries of(List<OHLCData> ohlcDataList) {
+        BarSeries bars = new BarSeries(ohlcDataList.isEmpty() ? null : ohlcDataList.get(0).symbol);
+        for (OHLCData ohlcData : ohlcDataList) {
+            bars.append(ohlcData);
+        }
+        return bars;
+    }
+
+    public static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000L),
+                (int) Math.floorMod(epochMillis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    public void append(long epochMillis, double open, double high, double low, double close, double volume) {
+        int chunk = size >>> CHUNK_SHIFT;
+        int offset = size & CHUNK_MASK;
+        if (chunk == times.length || times[chunk] == null) {
+            addChunk(chunk);
+        }
+        if (size > 0 && epochMillis < time(size - 1)) {
+            sorted = false;
+        }
+        times[chunk][offset] = epochMillis;
+        opens[chunk][offset] = open;
+        highs[chunk][offset] = high;
+        lows[chunk][offset] = low;
+        closes[chunk][offset] = close;
+        volumes[chunk][offset] = volume;
+        size++;
+    }
+
+    // Puts the bars of an older source in front, e.g. history loaded behind the recent bars. Bars move, so the version
+    // changes and derived data rebuilds
+    public void prependAll(BarSource older) {
+        BarSeries merged = new BarSeries(symbol);
+        merged.appendAll(older);
+        merged.appendAll(this);
+        times = merged.times;
+        opens = merged.opens;
+        highs = merged.highs;
+        lows = merged.lows;
+        closes = merged.closes;
+        volumes = merged.volumes;
+        size = merged.size;
+        sorted = merged.sorted;
+        ensureSorted();
+        version++;
+    }
+
+    private void addChunk(int chunk) {
+        if (chunk == times.length) {
+            int capacity = Math.max(4, times.length * 2);
+            times = Arrays.copyOf(times, capacity);
+            opens = Arrays.copyOf(opens, capacity);
+            highs = Arrays.copyOf(highs, capacity);
+            lows = Arrays.copyOf(lows, capacity);
+            closes = Arrays.copyOf(closes, capacity);
+            volumes = Arrays.copyOf(volumes, capacity);
+        }
+        times[chunk] = new long[CHUNK_SIZE];
+        opens[chunk] = new double[CHUNK_SIZE];
+        highs[chunk] = new double[CHUNK_SIZE];
+        lows[chunk] = new double[CHUNK_SIZE];
+        closes[chunk] = new double[CHUNK_SIZE];
+        volumes[chunk] = new double[CHUNK_SIZE];
+    }
+
+    // Overwrites a bar in place, the caller keeps the time column in order
+    public void set(int i, long epochMillis, double open, double high, double low, double close, double volume) {
+        if (i < size - 1) {
+            changes.record(i); // The forming bar is amended all the time and is always rebuilt anyway
+        }
+        write(i, epochMillis, open, high, low, close, volume);
+    }
+
+    private void write(int i, long epochMillis, double open, double high, double low, double close, double volume) {
+        int chunk = i >>> CHUNK_SHIFT;
+        int offset = i & CHUNK_MASK;
+        times[chunk][offset] = epochMillis;
+        opens[chunk][offset] = open;
+        highs[chunk][offset] = high;
+        lows[chunk][offset] = low;
+        closes[chunk][offset] = close;
+        volumes[chunk][offset] = volume;
+    }
+
+    // Makes room by moving later bars up one slot, one array copy per chunk and column
+    public void insert(int i, long epochMillis, double open, double high, double low, double close, double volume) {
+        if (i >= size) {
+            append(epochMillis, open, high, low, close, volume); // Nothing to move, also covers an empty source
+            return;
+        }
+        int last = size - 1;
+        append(time(last), open(last), high(last), low(last), close(last), volume(last));
+        shiftUp(times, i, last);
+        shiftUp(opens, i, last);
+        shiftUp(highs, i, last);
+        shiftUp(lows, i, last);
+        shiftUp(closes, i, last);
+        shiftUp(volumes, i, last);
+        write(i, epochMillis, open, high, low, close, volume);
+        changes.record(i);
+    }
+
+    // Moves the values at [from, to) of a chunked column up one slot, the last value of a chunk goes to the next one
+    private static void shiftUp(Object[] chunks, int from, int to) {
+        int end = to;
+        while (end > from) {
+            int chunk = (end - 1) >>> CHUNK_SHIFT;
+            int start = Math.max(from, chunk << CHUNK_SHIFT);
+            int length = end - start;
+            if (((end - 1) & CHUNK_MASK) == CHUNK_MASK) {
+                System.arraycopy(chunks[chunk], CHUNK_MASK, chunks[chunk + 1], 0, 1);
+                length--;
+            }
+            System.arraycopy(chunks[chunk], start & CHUNK_MASK, chunks[chunk], (start & CHUNK_MASK) + 1, length);
+            end = start;
+        }
+    }
+
+    public int size() {return size;}
+    public int version() {return version;}
+    public int changeCount() {return changes.count();}
+    public int changedFrom(int sinceChangeCount) {return changes.lowestSince(sinceChangeCount);}
+    public String getSymbol() {return symbol;}
+
+    public long time(int i) {return times[i >>> CHUNK_SHIFT][i & CHUNK_MASK];}
+    public double open(int i) {return opens[i >>> CHUNK_SHIFT][i & CHUNK_MASK];}
+    public double high(int i) {return highs[i >>> CHUNK_SHIFT][i & CHUNK_MASK];}
+    public double low(int i) {return lows[i >>> CHUNK_SHIFT][i & CHUNK_MASK];}
+    public double close(int i) {return closes[i >>> CHUNK_SHIFT][i & CHUNK_MASK];}
+    public double volume(int i) {return volumes[i >>> CHUNK_SHIFT][i & CHUNK_MASK];}
+
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    // Restores chronological order after out-of-order appends, a no-op when already sorted
+    public void ensureSorted() {
+        if (sorted) {
+            return;
+        }
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[size], 0, size);
+
+        long[] t = new long[size];
+        double[] o = new double[size], h = new double[size], l = new double[size], c = new double[size], v = new double[size];
+        for (int i = 0; i < size; i++) {
+            int j = order[i];
+            t[i] = time(j); o[i] = open(j); h[i] = high(j); l[i] = low(j); c[i] = close(j); v[i] = volume(j);
+        }
+        for (int i = 0; i < size; i++) {
+            int chunk = i >>> CHUNK_SHIFT;
+            int offset = i & CHUNK_MASK;
+            times[chunk][offset] = t[i];
+            opens[chunk][offset] = o[i];
+            highs[chunk][offset] = h[i];
+            lows[chunk][offset] = l[i];
+            closes[chunk][offset] = c[i];
+            volumes[chunk][offset] = v[i];
+        }
+        sorted = true;
+        version++;
+    }
+
+    // Stable merge sort of bar indices by timestamp, keeps equal timestamps in arrival order
+    private void mergeSort(int[] order, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(order, buffer, from, mid);
+        mergeSort(order, buffer, mid, to);
+        int left = from, right = mid, out = from;
+        while (left < mid && right < to) {
+            buffer[out++] = time(order[right]) < time(order[left]) ? order[right++] : order[left++];
+        }
+        while (left < mid) buffer[out++] = order[left++];
+        while (right < to) buffer[out++] = order[right++];
+        System.arraycopy(buffer, from, order, from, to - from);
+    }
+
+    public void clear() {
+        size = 0;
+        sorted = true;
+        version++;
+    }
+}
@@ -0,0 +1,452 @@
+package com.jat.ctfxplotsplus;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A compact, versioned binary columnar format for {@link BarSeries} history.
+ *
+ * <p>Bars are stored in blocks of {@link BarSeries#CHUNK_SIZE} bars, each column of a block written one after
+ * another as zigzag varints:
+ * <ul>
+ * <li>Timestamps - First value, first delta, then delta-of-delta, usually a single zero byte per bar.</li>
+ * <li>Prices - Scaled to integers with the fewest decimals (0 to 8) that round-trip every price of the block.
+ * Open is stored relative to the previous close, high, low and close relative to the open.</li>
+ * <li>Volumes - Scaled to integers the same way.</li>
+ * </ul>
+ * Blocks whose values do not round-trip at any scale are stored as raw doubles. The header holds the symbol and bar
+ * count, followed by an index with the time span and file offset of every block, so a time range is read without
+ * reading or decoding the other blocks.</p>
+ *
+ * <p>Layout:
+ * <pre>
+ * magic "CTFB", version (short), symbol (UTF), bar count, block count
+ * index: [first time, last time, bar count, offset, length] per block
+ * blocks: price decimals, volume decimals, time column, open, high, low, close, volume columns
+ * </pre>
+ * </p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * BarSnapshot.write(bars, Path.of("AAPL.bars"));
+ * BarSeries all = BarSnapshot.read(Path.of("AAPL.bars"));
+ * BarSeries january = BarSnapshot.read(Path.of("AAPL.bars"), from, to);
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class BarSnapshot {
+    public static final int MAGIC = 0x43544642; // "CTFB"
+    public static final short VERSION = 1;
+
+    private static final int MAX_DECIMALS = 8;
+    private static final int RAW = 0xFF;
+    private static final int INDEX_ENTRY_BYTES = 8 + 8 + 4 + 8 + 4;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8};
+
+    private BarSnapshot() {
+    }
+
+    public static void write(BarSeries bars, Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(bars, out);
+        }
+    }
+
+    public static void write(BarSeries bars, OutputStream out) throws IOException {
+        bars.ensureSorted();
+        int blockCount = (bars.size() + BarSeries.CHUNK_SIZE - 1) / BarSeries.CHUNK_SIZE;
+        byte[][] blocks = new byte[blockCount][];
+        BlockWriter writer = new BlockWriter();
+        for (int b = 0; b < blockCount; b++) {
+            int from = b * BarSeries.CHUNK_SIZE;
+            blocks[b] = writer.encode(bars, from, Math.min(bars.size(), from + BarSeries.CHUNK_SIZE));
+        }
+
+        byte[] symbol = (bars.getSymbol() == null ? "" : bars.getSymbol()).getBytes(StandardCharsets.UTF_8);
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeShort(symbol.length);
+        data.write(symbol);
+        data.writeInt(bars.size());
+        data.writeInt(blockCount);
+
+        long offset = 4 + 2 + 2 + symbol.length + 4 + 4 + (long) blockCount * INDEX_ENTRY_BYTES;
+        for (int b = 0; b < blockCount; b++) {
+            int from = b * BarSeries.CHUNK_SIZE;
+            int to = Math.min(bars.size(), from + BarSeries.CHUNK_SIZE);
+            data.writeLong(bars.time(from));
+            data.writeLong(bars.time(to - 1));
+            data.writeInt(to - from);
+            data.writeLong(offset);
+            data.writeInt(blocks[b].length);
+            offset += blocks[b].length;
+        }
+        for (byte[] block : blocks) {
+            data.write(block);
+        }
+        data.flush();
+    }
+
+    public static BarSeries read(Path path) throws IOException {
+        return read(path, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads only the blocks overlapping [fromMillis, toMillis], bars outside the range are dropped. The header and
+     * index are read first, then each overlapping block on its own, so the rest of the file is never loaded and
+     * snapshots past 2 GB work.
+     */
+    public static BarSeries read(Path path, long fromMillis, long toMillis) throws IOException {
+        BarSeries bars = new BarSeries();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < 16) {
+                throw new IOException("Not a bar snapshot");
+            }
+            ByteBuffer head = readFully(channel, 0, 8);
+            if (head.getInt() != MAGIC) {
+                throw new IOException("Not a bar snapshot");
+            }
+            int version = head.getShort() & 0xFFFF;
+            if (version != VERSION) {
+                throw new IOException("Unsupported bar snapshot version " + version);
+            }
+            int symbolLength = head.getShort() & 0xFFFF;
+            ByteBuffer rest = readFully(channel, 8, symbolLength + 8);
+            byte[] symbol = new byte[symbolLength];
+            rest.get(symbol);
+            bars.symbol = new String(symbol, StandardCharsets.UTF_8);
+            rest.getInt(); // Bar count, implied by the index
+            int blockCount = rest.getInt();
+            if ((long) blockCount * INDEX_ENTRY_BYTES > fileSize) {
+                throw new IOException("Truncated bar snapshot");
+            }
+
+            ByteBuffer index = readFully(channel, 16 + symbolLength, blockCount * INDEX_ENTRY_BYTES);
+            BlockReader reader = new BlockReader(new byte[0]);
+            for (int b = 0; b < blockCount; b++) {
+                long firstTime = index.getLong();
+                long lastTime = index.getLong();
+                int count = index.getInt();
+                long offset = index.getLong();
+                int length = index.getInt();
+                if (lastTime < fromMillis || firstTime > toMillis) {
+                    continue;
+                }
+                if (offset + length > fileSize) {
+                    throw new IOException("Truncated bar snapshot");
+                }
+                reader.reset(readFully(channel, offset, length).array());
+                reader.decode(count, fromMillis, toMillis, bars);
+            }
+        }
+        return bars;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated bar snapshot");
+            }
+        }
+        return buffer.flip();
+    }
+
+    public static void read(byte[] file, long fromMillis, long toMillis, BarSeries into) throws IOException {
+        BlockReader reader = new BlockReader(file);
+        if (file.length < 16 || reader.readInt() != MAGIC) {
+            throw new IOException("Not a bar snapshot");
+        }
+        int version = reader.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported bar snapshot version " + version);
+        }
+        int symbolLength = reader.readShort();
+        into.symbol = new String(file, reader.pos, symbolLength, StandardCharsets.UTF_8);
+        reader.pos += symbolLength;
+        reader.readInt(); // Bar count, implied by the index
+        int blockCount = reader.readInt();
+
+        for (int b = 0; b < blockCount; b++) {
+            long firstTime = reader.readLong();
+            long lastTime = reader.readLong();
+            int count = reader.readInt();
+            long offset = reader.readLong();
+            int length = reader.readInt();
+            if (lastTime < fromMillis || firstTime > toMillis) {
+                continue;
+            }
+            if (offset + length > file.length) {
+                throw new IOException("Truncated bar snapshot");
+            }
+            int indexPos = reader.pos;
+            reader.pos = (int) offset;
+            reader.decode(count, fromMillis, toMillis, into);
+            reader.pos = indexPos;
+        }
+    }
+
+    // Encodes one block into a reusable growable buffer
+    private static class BlockWriter {
+        private byte[] buffer = new byte[1 << 16];
+        private int pos;
+
+        byte[] encode(BarSeries bars, int from, int to) {
+            pos = 0;
+            int priceDecimals = decimalsFor(bars, from, to, true);
+            int volumeDecimals = decimalsFor(bars, from, to, false);
+            writeByte(priceDecimals);
+            writeByte(volumeDecimals);
+
+            long previousTime = 0;
+            long previousDelta = 0;
+            for (int i = from; i < to; i++) {
+                long delta = bars.time(i) - previousTime;
+                writeVarLong(i == from ? bars.time(i) : i == from + 1 ? delta : delta - previousDelta);
+                previousDelta = delta;
+                previousTime = bars.time(i);
+            }
+
+            if (priceDecimals == RAW) {
+                for (int column = 0; column < 4; column++) {
+                    for (int i = from; i < to; i++) {
+                        writeRaw(price(bars, i, column));
+                    }
+                }
+            } else {
+                double pow = POWERS_OF_TEN[priceDecimals];
+                long previousClose = 0;
+                for (int i = from; i < to; i++) {
+                    long open = Math.round(bars.open(i) * pow);
+                    writeVarLong(open - previousClose);
+                    previousClose = Math.round(bars.close(i) * pow);
+                }
+                for (int column = 1; column < 4; column++) {
+                    for (int i = from; i < to; i++) {
+                        writeVarLong(Math.round(price(bars, i, column) * pow) - Math.round(bars.open(i) * pow));
+                    }
+                }
+            }
+
+            for (int i = from; i < to; i++) {
+                if (volumeDecimals == RAW) {
+                    writeRaw(bars.volume(i));
+                } else {
+                    writeVarLong(Math.round(bars.volume(i) * POWERS_OF_TEN[volumeDecimals]));
+                }
+            }
+            return Arrays.copyOf(buffer, pos);
+        }
+
+        private static double price(BarSeries bars, int i, int column) {
+            switch (column) {
+                case 0: return bars.open(i);
+                case 1: return bars.high(i);
+                case 2: return bars.low(i);
+                default: return bars.close(i);
+            }
+        }
+
+        // Fewest decimals that round-trip every value exactly, or RAW
+        private static int decimalsFor(BarSeries bars, int from, int to, boolean prices) {
+            int decimals = 0;
+            for (int i = from; i < to; i++) {
+                if (prices) {
+                    for (int column = 0; column < 4 && decimals != RAW; column++) {
+                        decimals = widen(price(bars, i, column), decimals);
+                    }
+                } else {
+                    decimals = widen(bars.volume(i), decimals);
+                }
+                if (decimals == RAW) {
+                    return RAW;
+                }
+            }
+            return decimals;
+        }
+
+        private static int widen(double value, int decimals) {
+            for (; decimals <= MAX_DECIMALS; decimals++) {
+                double scaled = value * POWERS_OF_TEN[decimals];
+                if (Math.abs(scaled) < 1L << 52 && Math.round(scaled) / POWERS_OF_TEN[decimals] == value) {
+                    return decimals;
+                }
+            }
+            return RAW;
+        }
+
+        private void writeByte(int b) {
+            if (pos == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[pos++] = (byte) b;
+        }
+
+        private void writeVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                writeByte((int) (zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            writeByte((int) zigzag);
+        }
+
+        private void writeRaw(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (bits >>> shift));
+            }
+        }
+    }
+
+    // Decodes header fields and blocks straight from the file bytes
+    private static class BlockReader {
+        private byte[] file;
+        private int pos;
+        private long[] times = new long[BarSeries.CHUNK_SIZE];
+        private double[][] columns = new double[5][BarSeries.CHUNK_SIZE];
+
+        BlockReader(byte[] file) {
+            this.file = file;
+        }
+
+        // Moves on to a block read on its own, the decode arrays are kept
+        void reset(byte[] block) {
+            this.file = block;
+            this.pos = 0;
+        }
+
+        void decode(int count, long fromMillis, long toMillis, BarSeries into) throws IOException {
+            if (count > times.length) {
+                times = new long[count];
+                columns = new double[5][count];
+            }
+            int priceDecimals = file[pos++] & 0xFF;
+            int volumeDecimals = file[pos++] & 0xFF;
+            if ((priceDecimals > MAX_DECIMALS && priceDecimals != RAW)
+                    || (volumeDecimals > MAX_DECIMALS && volumeDecimals != RAW)) {
+                throw new IOException("Corrupt bar snapshot block");
+            }
+
+            long time = 0;
+            long delta = 0;
+            for (int i = 0; i < count; i++) {
+                long value = readVarLong();
+                if (i == 0) {
+                    time = value;
+                } else {
+                    delta = i == 1 ? value : delta + value;
+                    time += delta;
+                }
+                times[i] = time;
+            }
+
+            double[] opens = columns[0];
+            if (priceDecimals == RAW) {
+                for (int column = 0; column < 4; column++) {
+                    for (int i = 0; i < count; i++) {
+                        columns[column][i] = readRaw();
+                    }
+                }
+            } else {
+                // Opens are relative to the previous close, so open and close are resolved together
+                double pow = POWERS_OF_TEN[priceDecimals];
+                long[] scaledOpens = new long[count];
+                for (int i = 0; i < count; i++) {
+                    scaledOpens[i] = readVarLong();
+                }
+                int closeStart = pos;
+                skipVarLongs(2 * count);
+                long previousClose = 0;
+                for (int i = 0; i < count; i++) {
+                    long open = previousClose + scaledOpens[i];
+                    scaledOpens[i] = open;
+                    opens[i] = open / pow;
+                    previousClose = open + readVarLong();
+                    columns[3][i] = previousClose / pow;
+                }
+                int end = pos;
+                pos = closeStart;
+                for (int column = 1; column < 3; column++) {
+                    for (int i = 0; i < count; i++) {
+                        columns[column][i] = (scaledOpens[i] + readVarLong()) / pow;
+                    }
+                }
+                pos = end;
+            }
+
+            double[] volumes = columns[4];
+            for (int i = 0; i < count; i++) {
+                volumes[i] = volumeDecimals == RAW ? readRaw() : readVarLong() / POWERS_OF_TEN[volumeDecimals];
+            }
+
+            for (int i = 0; i < count; i++) {
+                if (times[i] >= fromMillis && times[i] <= toMillis) {
+                    into.append(times[i], opens[i], columns[1][i], columns[2][i], columns[3][i], volumes[i]);
+                }
+            }
+        }
+
+        int readInt() {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | (file[pos++] & 0xFF);
+            }
+            return value;
+        }
+
+        int readShort() {
+            int value = ((file[pos] & 0xFF) << 8) | (file[pos + 1] & 0xFF);
+            pos += 2;
+            return value;
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (file[pos++] & 0xFF);
+            }
+            return value;
+        }
+
+        double readRaw() {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        long readVarLong() throws IOException {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= file.length) {
+                    throw new IOException("Truncated bar snapshot");
+                }
+                byte b = file[pos++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new IOException("Corrupt bar snapshot varint");
+        }
+
+        private void skipVarLongs(int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                readVarLong();
+            }
+        }
+    }
+}
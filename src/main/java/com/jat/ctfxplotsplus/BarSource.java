@@ -0,0 +1,158 @@
+package com.jat.ctfxplotsplus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Indexed, chronologically ordered OHLC bars as read by the {@link OHLCChart}, its axes and the hover tooltip.
+ *
+ * <p>Bars are addressed by index and read one column value at a time, so an implementation can serve them from
+ * heap arrays ({@link BarSeries}) or straight from a memory-mapped file ({@link MappedBarStore}) without creating
+ * an object per bar. Live updates go through {@link #append(long, double, double, double, double, double)}, the
+ * forming bar is amended in place with {@link #set(int, long, double, double, double, double, double)}.</p>
+ *
+ * <p>Methods:
+ * <ul>
+ * <li>{@link #size()} - Number of bars.</li>
+ * <li>{@link #version()} - Changes when bars are reordered or cleared, derived data such as {@link BarPyramid} rebuilds on it.</li>
+ * <li>{@link #changeCount()}, {@link #changedFrom(int)} - Lowest bar touched by late inserts and amends, derived data
+ * rebuilds from there.</li>
+ * <li>{@link #time(int)} to {@link #volume(int)} - Column values of a bar.</li>
+ * <li>{@link #indexAtOrAfter(long)}, {@link #indexAfter(long)} - Binary search from a time to a bar index.</li>
+ * <li>{@link #upsert(long, double, double, double, double, double)} - Amends, appends or inserts a bar in time order.</li>
+ * <li>{@link #minLow(int, int)}, {@link #maxHigh(int, int)} - Price range of a run of bars.</li>
+ * <li>{@link #derived()} - Empty source of the same kind for merged or rolled-up bars, mapped bars stay off the heap.</li>
+ * </ul>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public interface BarSource {
+
+    String getSymbol();
+    int size();
+    int version();
+
+    // Counts late inserts and amends of bars before the last one, the bars before the changed one stay in place
+    int changeCount();
+
+    // Lowest index changed since changeCount() returned the given value, 0 when that is too long ago to tell
+    // and Integer.MAX_VALUE when nothing changed
+    int changedFrom(int sinceChangeCount);
+    boolean isSorted();
+
+    // Restores chronological order, a no-op for sources that only accept ordered appends
+    void ensureSorted();
+
+    void append(long epochMillis, double open, double high, double low, double close, double volume);
+
+    // Overwrites a bar in place, the caller keeps the time column in order
+    void set(int i, long epochMillis, double open, double high, double low, double close, double volume);
+
+    // Inserts a bar before index i, later bars move up by one
+    void insert(int i, long epochMillis, double open, double high, double low, double close, double volume);
+
+    void clear();
+
+    // Empty source for bars derived from this one, such as pyramid levels and rolled-up timeframes
+    default BarSource derived() {
+        return new BarSeries(getSymbol());
+    }
+
+    long time(int i);
+    double open(int i);
+    double high(int i);
+    double low(int i);
+    double close(int i);
+    double volume(int i);
+
+    default boolean isEmpty() {return size() == 0;}
+    default LocalDateTime dateTime(int i) {return BarSeries.toDateTime(time(i));}
+
+    default void append(OHLCData ohlcData) {
+        append(BarSeries.toEpochMillis(ohlcData.getDateTime()), ohlcData.getOpen(), ohlcData.getHigh(),
+                ohlcData.getLow(), ohlcData.getClose(), ohlcData.getVolume());
+    }
+
+    default int upsert(OHLCData ohlcData) {
+        return upsert(BarSeries.toEpochMillis(ohlcData.getDateTime()), ohlcData.getOpen(), ohlcData.getHigh(),
+                ohlcData.getLow(), ohlcData.getClose(), ohlcData.getVolume());
+    }
+
+    /**
+     * Adds a bar in time order and returns its index. A bar with the time of an existing bar amends its high, low,
+     * close and volume in place, a newer bar is appended and a late bar is inserted at its binary search position.
+     */
+    default int upsert(long epochMillis, double open, double high, double low, double close, double volume) {
+        int last = size() - 1;
+        if (last < 0 || epochMillis > time(last)) {
+            append(epochMillis, open, high, low, close, volume);
+            return last + 1;
+        }
+        // The forming bar is by far the most common target, so the tail is checked before searching
+        int i = epochMillis == time(last) ? last : indexAtOrAfter(epochMillis);
+        if (time(i) == epochMillis) {
+            set(i, epochMillis, open(i), high, low, close, volume);
+        } else {
+            insert(i, epochMillis, open, high, low, close, volume);
+        }
+        return i;
+    }
+
+    // Appends every bar of another source in order
+    default void appendAll(BarSource other) {
+        for (int i = 0; i < other.size(); i++) {
+            append(other.time(i), other.open(i), other.high(i), other.low(i), other.close(i), other.volume(i));
+        }
+    }
+
+    // Index of the first bar at or after the given time, size() when every bar is earlier
+    default int indexAtOrAfter(long epochMillis) {
+        int low = 0, high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (time(mid) < epochMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Index of the first bar strictly after the given time, size() when no bar is later
+    default int indexAfter(long epochMillis) {
+        int low = 0, high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (time(mid) <= epochMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Builds an OHLCData view of a single bar, only use this off the hot paths
+    default OHLCData get(int i) {
+        OHLCData ohlcData = new OHLCData(dateTime(i), open(i), high(i), low(i), close(i), volume(i));
+        ohlcData.symbol = getSymbol();
+        return ohlcData;
+    }
+
+    default double minLow(int from, int to) {
+        double min = Double.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            min = Math.min(min, low(i));
+        }
+        return min;
+    }
+
+    default double maxHigh(int from, int to) {
+        double max = -Double.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, high(i));
+        }
+        return max;
+    }
+}
@@ -0,0 +1,39 @@
+package com.jat.ctfxplotsplus;
+
+/**
+ * Remembers the bar indices of the most recent in-place changes of a {@link BarSource}, so data derived from it
+ * can rebuild from the lowest changed bar instead of from scratch.
+ *
+ * <p>Late bar inserts and amends of bars before the last one are recorded. A reader keeps the {@link #count()} it
+ * last caught up with and asks for {@link #lowestSince(int)}, the bars before that index are unchanged. Only the
+ * last {@value #CAPACITY} changes are kept, a reader further behind gets 0 and rebuilds everything.</p>
+ *
+ * @author Aidan Korczynski
+ */
+final class ChangeLog {
+    static final int CAPACITY = 64;
+    private static final int MASK = CAPACITY - 1;
+
+    private final int[] indices = new int[CAPACITY];
+    private int count = 0;
+
+    void record(int index) {
+        indices[count & MASK] = index;
+        count++;
+    }
+
+    int count() {return count;}
+
+    // Lowest index changed since count() returned since, Integer.MAX_VALUE when nothing changed
+    int lowestSince(int since) {
+        int behind = count - since;
+        if (behind < 0 || behind > CAPACITY) {
+            return 0;
+        }
+        int lowest = Integer.MAX_VALUE;
+        for (int c = since; c != count; c++) {
+            lowest = Math.min(lowest, indices[c & MASK]);
+        }
+        return lowest;
+    }
+}
@@ -0,0 +1,134 @@
+package com.jat.ctfxplotsplus;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * A lightweight canvas layer drawn above the cached candle layer of the {@link OHLCChart}.
+ *
+ * <p>The overlay holds everything that follows the mouse or changes with every tick: the crosshair, the
+ * hover tooltip, the last price label and the selection band. Repainting it only clears and redraws these few
+ * shapes, so mouse movement never touches the candle canvas.</p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * ChartOverlay overlay = new ChartOverlay(pane);
+ * overlay.setMouse(event.getX(), event.getY());
+ * overlay.repaint();
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class ChartOverlay {
+    public final Canvas canvas;
+    public Color crosshairColor = Color.gray(0.6, 0.6);
+    public Color selectionColor = Color.color(0.3, 0.5, 1.0, 0.2);
+
+    private double mouseX = Double.NaN;
+    private double mouseY = Double.NaN;
+    private String tooltip = null;
+    private double tooltipX = 0;
+    private double tooltipY = 0;
+    private String lastPrice = null;
+    private double lastPriceX = 0;
+    private double lastPriceY = 0;
+    private Color lastPriceColor = Color.WHITE;
+    private double selectionStart = Double.NaN;
+    private double selectionEnd = Double.NaN;
+
+    public ChartOverlay(Pane pane) {
+        this.canvas = new Canvas(pane.getWidth(), pane.getHeight());
+        this.canvas.widthProperty().bind(pane.widthProperty());
+        this.canvas.heightProperty().bind(pane.heightProperty());
+        this.canvas.setMouseTransparent(true);
+    }
+
+    public void setMouse(double x, double y) {
+        this.mouseX = x;
+        this.mouseY = y;
+    }
+
+    public void clearMouse() {
+        this.mouseX = Double.NaN;
+        this.mouseY = Double.NaN;
+    }
+
+    public void setTooltip(String text, double x, double y) {
+        this.tooltip = text;
+        this.tooltipX = x;
+        this.tooltipY = y;
+    }
+
+    public void clearTooltip() {
+        this.tooltip = null;
+    }
+
+    public boolean hasTooltip() {
+        return tooltip != null;
+    }
+
+    public void setLastPrice(String text, double x, double y, Color color) {
+        this.lastPrice = text;
+        this.lastPriceX = x;
+        this.lastPriceY = y;
+        this.lastPriceColor = color;
+    }
+
+    public void clearLastPrice() {
+        this.lastPrice = null;
+    }
+
+    public void setSelection(double startX, double endX) {
+        this.selectionStart = Math.min(startX, endX);
+        this.selectionEnd = Math.max(startX, endX);
+    }
+
+    public void clearSelection() {
+        this.selectionStart = Double.NaN;
+        this.selectionEnd = Double.NaN;
+    }
+
+    public boolean hasSelection() {
+        return !Double.isNaN(selectionStart);
+    }
+
+    public double getSelectionStart() {return selectionStart;}
+    public double getSelectionEnd() {return selectionEnd;}
+
+    public void repaint() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+
+        if (hasSelection()) {
+            gc.setFill(selectionColor);
+            gc.fillRect(selectionStart, 0, selectionEnd - selectionStart, canvas.getHeight());
+        }
+
+        if (!Double.isNaN(mouseX)) {
+            gc.setStroke(crosshairColor);
+            gc.setLineWidth(1);
+            // Half pixel offsets keep the 1px lines crisp
+            double x = Math.floor(mouseX) + 0.5;
+            double y = Math.floor(mouseY) + 0.5;
+            gc.strokeLine(x, 0, x, canvas.getHeight());
+            gc.strokeLine(0, y, canvas.getWidth(), y);
+        }
+
+        if (lastPrice != null) {
+            gc.setFill(lastPriceColor);
+            gc.fillText(lastPrice, lastPriceX - 8, lastPriceY + 8);
+        }
+
+        if (tooltip != null) {
+            gc.setFill(Color.color(0, 0, 0, 0.8));
+            gc.fillRect(tooltipX + 10, tooltipY + 10, 150, 70); // Draw the background for the tooltip
+            gc.setFill(Color.WHITE);
+            gc.fillText(tooltip, tooltipX + 15, tooltipY + 25); // Draw the tooltip text
+        }
+    }
+}
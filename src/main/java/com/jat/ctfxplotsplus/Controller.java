@@ -1,7 +1,6 @@
 package com.jat.ctfxplotsplus;
 
 
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.Slider;
@@ -10,6 +9,7 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 
 public class Controller {
+    private static final int RECENT_BARS = 200; // Bars parsed and drawn before the rest of the history
 
     @FXML
     private Font x1;
@@ -42,9 +42,8 @@ public class Controller {
         try {
             PlotHandler plotHandler = new PlotHandler();
             System.out.println("\nmocking Data...\n\n");
-            ObservableList<OHLCData> data = plotHandler.readData();
-            System.out.println("Showing chart....\n\n");
-            plotHandler.showOHLCChart(scrollPane, anchorForChart, true, data);
+            // The window opens at once, the most recent bars are charted first and older history follows
+            plotHandler.showOHLCChartProgressive(scrollPane, anchorForChart, true, RECENT_BARS);
             
             //this.chart = plotHandler.getOHLCChart();
             //System.out.println("Recieved chart instance: " + chart);
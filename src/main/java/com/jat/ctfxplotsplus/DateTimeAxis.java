@@ -8,9 +8,11 @@ import javafx.scene.chart.Axis;
 
 
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -25,9 +27,13 @@ import java.util.stream.Collectors;
  * <p>Features include:
  * <ul>
  * <li>Setting custom bounds for the axis</li>
- * <li>Calculating tick values asynchronously</li>
- * <li>Formatting tick mark labels based on the range</li>
+ * <li>Choosing calendar-aligned tick steps (1s to years) for the axis length with a {@link TimeTickEngine}</li>
+ * <li>Formatting tick mark labels once per tick and granularity, and reusing tick marks across layouts</li>
  * <li>Handling display positions and value conversions</li>
+ * <li>Mapping epoch milliseconds to pixels with a cached scale and offset, down to millisecond bars</li>
+ * <li>Placing candles by bar index in constant time</li>
+ * <li>An ordinal mode that spaces bars evenly and drops session gaps, with an optional {@link SessionCalendar}</li>
+ * <li>A window of MAX_TICK_COUNT bars that can be scrolled back by scrollOffset bars, see {@link ViewportController}</li>
  * </ul>
  * 
  * <p>Example usage:
@@ -44,12 +50,40 @@ import java.util.stream.Collectors;
 public class DateTimeAxis extends Axis<LocalDateTime> {
 
 
+    public static final double CANDLE_OFFSET = 15; // Candles are drawn this far right of their time
     public int MAX_TICK_COUNT = 100;
+    public int scrollOffset = 0; // Bars hidden after the window, 0 follows the latest bar
+    private BarSource anchoredDataset; // Size seen by the last updateMarks, new bars keep a scrolled back view in place
+    private int anchoredSize = 0;
     public Range range;
-    public ObservableList<OHLCData> dataset;
-    public List<LocalDateTime> tickMarks;
-    public List<LocalDateTime> tickValues = new ArrayList<>();
+    public BarSource dataset;
+    public double minTickSpacing = 80; // Pixels between tick labels at least
+    // Views of the bars in the tick window, the last MAX_TICK_COUNT bars. They read the series on access, so
+    // recomputing ticks is a range query that neither copies nor sorts
+    public List<LocalDateTime> tickMarks = new WindowView();
+    public List<LocalDateTime> tickValues = tickMarks;
+    // Calendar-aligned ticks, the list and TickMark instances are reused across layouts
+    private final TimeTickEngine tickEngine = new TimeTickEngine();
+    private final List<LocalDateTime> labelValues = new ArrayList<>();
+    private final ObservableList<TickMark<LocalDateTime>> tickMarkList = FXCollections.observableArrayList();
+    // Bounds as epoch milliseconds and pixels per millisecond, refreshed when the bounds or the axis length change
+    private long lowerMillis;
+    private long upperMillis;
+    private double scale = 0;
+    // Ordinal mode: x is the bar index, so nights, weekends and holidays take no space
+    private boolean ordinal = false;
+    private SessionCalendar sessions;
+    private double lowerIndex;
+    private double upperIndex;
+    private double indexScale = 0;
+    private int[] ordinalTicks = new int[64]; // Bar indices of the ordinal ticks
+    private int ordinalCount = 0;
+    private final long[] intervalSamples = new long[15];
     public DateTimeAxis(LocalDateTime lowerBound, LocalDateTime upperBound, ObservableList<OHLCData> dataset) {
+        this(lowerBound, upperBound, BarSeries.of(dataset));
+    }
+
+    public DateTimeAxis(LocalDateTime lowerBound, LocalDateTime upperBound, BarSource dataset) {
         // this(lowerBound, upperBound, chart);
         setAutoRanging(false); // Disable auto-ranging
         setSide(Side.BOTTOM);
@@ -60,16 +94,48 @@ public class DateTimeAxis extends Axis<LocalDateTime> {
         this.tickLengthProperty().set(1);
         this.tickMarkVisibleProperty().set(false);
         
+        widthProperty().addListener((obs, oldWidth, newWidth) -> updateTransform());
+        heightProperty().addListener((obs, oldHeight, newHeight) -> updateTransform());
         this.dataset=dataset;
-        if (dataset.size() < MAX_TICK_COUNT) {
-            MAX_TICK_COUNT = dataset.size();
+        if (!dataset.isEmpty() && dataset.size() < MAX_TICK_COUNT) {
+            MAX_TICK_COUNT = dataset.size(); // An empty chart keeps the default for the bars it is given later
         }
         //this.chart = chart; // Store reference to the chart
         this.range = new Range(lowerBound, upperBound);
         setRange(new Range(lowerBound, upperBound), true);
         //System.out.println("Info:" + isTickLabelsVisible() + " " + isTickMarkVisible() + " " + isAutoRanging());
-        this.tickMarks =supplyTickValues(getRange());
-        this.tickValues = supplyTickValues(getRange());
+        supplyTickValues(getRange());
+    }
+
+    // The bars of the tick window, in time order because the series keeps itself sorted
+    private class WindowView extends AbstractList<LocalDateTime> implements RandomAccess {
+        @Override
+        public LocalDateTime get(int i) {
+            return dataset.dateTime(windowStart() + i);
+        }
+
+        @Override
+        public int size() {
+            return windowEnd() - windowStart();
+        }
+    }
+
+    public int windowStart() {
+        return Math.max(0, windowEnd() - MAX_TICK_COUNT);
+    }
+
+    // One past the last bar of the window
+    public int windowEnd() {
+        return dataset == null ? 0 : Math.max(0, dataset.size() - scrollOffset);
+    }
+
+    // Shows count bars ending before end, clamped to the dataset
+    public void setWindow(int end, int count) {
+        MAX_TICK_COUNT = count;
+        scrollOffset = dataset == null ? 0 : dataset.size() - end;
+        anchoredDataset = dataset;
+        anchoredSize = dataset == null ? 0 : dataset.size();
+        updateMarks();
     }
 
      public class Range {
@@ -100,17 +166,81 @@ public class DateTimeAxis extends Axis<LocalDateTime> {
         // upperBound);
         range.lowerBound = lowerBound;
         range.upperBound = upperBound;
+        updateTransform();
         
         invalidateRange();
         requestAxisLayout();
     }
+    // Recomputes the epoch bounds and scale, the only place the calendar bounds are converted
+    private void updateTransform() {
+        if (range == null || range.lowerBound == null || range.upperBound == null) {
+            scale = 0;
+            return;
+        }
+        lowerMillis = BarSeries.toEpochMillis(range.lowerBound);
+        upperMillis = BarSeries.toEpochMillis(range.upperBound);
+        double axisLength = getSide().isHorizontal() ? getWidth() : getHeight();
+        scale = upperMillis > lowerMillis ? axisLength / (upperMillis - lowerMillis) : 0; // 0 maps everything to the origin
+        indexScale = upperIndex > lowerIndex ? axisLength / (upperIndex - lowerIndex) : 0;
+    }
+
+    public long getLowerMillis() {return lowerMillis;}
+    public long getUpperMillis() {return upperMillis;}
+
+    /**
+     * Switches between a linear time axis and an ordinal one, where every bar takes the same width whatever the
+     * time between bars. In ordinal mode bar to pixel and pixel to bar are O(1) and times come from the bar index.
+     */
+    public void setOrdinal(boolean ordinal) {
+        this.ordinal = ordinal;
+        invalidateRange();
+        requestAxisLayout();
+    }
+
+    public boolean isOrdinal() {return ordinal;}
+
+    // Puts day and longer ticks on session opens and, in ordinal mode, skips days without a session
+    public void setSessionCalendar(SessionCalendar sessions) {
+        this.sessions = sessions;
+        tickEngine.setSessionOffset(sessions == null ? 0 : sessions.sessionStartMillis);
+        invalidateRange();
+        requestAxisLayout();
+    }
+
+    public SessionCalendar getSessionCalendar() {return sessions;}
+
+    // Pixel position of a bar index in ordinal mode
+    public double getIndexPosition(double index) {
+        return (index - lowerIndex) * indexScale;
+    }
+
+    // Bar index, fractional, at a pixel position in ordinal mode
+    public double getIndexForDisplay(double displayPosition) {
+        return indexScale == 0 ? lowerIndex : lowerIndex + displayPosition / indexScale;
+    }
+
+    // Pixels per millisecond and pixels per bar of the current window
+    public double getScale() {return scale;}
+    public double getIndexScale() {return indexScale;}
+
+    public double getLowerIndex() {return lowerIndex;}
+    public double getUpperIndex() {return upperIndex;}
+
 public void updateMarks(){
-try {
-    this.tickMarks =supplyTickValues(getRange());
-    this.tickValues = supplyTickValues(getRange());
-}
-catch (Exception e){
-    System.out.println("Reached end of data set.");}
+    if (dataset != null && !dataset.isEmpty() && MAX_TICK_COUNT > dataset.size()) {
+        MAX_TICK_COUNT = Math.max(1, dataset.size()); // Zoomed out past the first bar
+    }
+    MAX_TICK_COUNT = Math.max(1, MAX_TICK_COUNT);
+    if (dataset != null) {
+        // Bars appended while scrolled back land after the window instead of moving it
+        if (dataset == anchoredDataset && scrollOffset > 0 && dataset.size() > anchoredSize) {
+            scrollOffset += dataset.size() - anchoredSize;
+        }
+        anchoredDataset = dataset;
+        anchoredSize = dataset.size();
+        scrollOffset = Math.max(0, Math.min(scrollOffset, dataset.size() - MAX_TICK_COUNT));
+    }
+    supplyTickValues(getRange());
 }
     @Override
     protected Range getRange() {
@@ -125,59 +255,51 @@ catch (Exception e){
             System.out.println("Range is not of type Range");
             return List.of(); // Return an empty list if range is invalid
         }
-    
-        Range r = (Range) range;
-    
         if (this.dataset == null || this.dataset.isEmpty()) {
-            System.out.println("OHLC Data List is empty or not initialized.");
-            return List.of();
+            return List.of(); // No bars yet, e.g. while the history is still loading
         }
-        
-        List<LocalDateTime> tickValues = new ArrayList<>();
-        this.dataset.sort((a, b) -> a.getDateTime().compareTo(b.getDateTime()));
-        int startIndex = Math.max(0, this.dataset.size() - MAX_TICK_COUNT);
-        for (int i = startIndex; i < this.dataset.size(); i++) {
-            if ((i - startIndex) % 5 == 0) { // Add every 5th tick mark
-                tickValues.add(this.dataset.get(i).getDateTime());
+        if (ordinal) {
+            computeOrdinalTicks(length);
+            labelValues.clear();
+            for (int i = 0; i < ordinalCount; i++) {
+                labelValues.add(tickEngine.dateTime(dataset.time(ordinalTicks[i])));
             }
+            return labelValues;
         }
-    
-        tickValues.sort(LocalDateTime::compareTo); // Ensure tick marks are in chronological order
-        return tickValues;
+        // Ticks depend only on the bounds and the length, the same ticks are handed back while neither changes
+        int generation = tickEngine.generation;
+        tickEngine.compute(lowerMillis, upperMillis, length, minTickSpacing);
+        if (tickEngine.generation != generation || labelValues.size() != tickEngine.count) {
+            labelValues.clear();
+            for (int i = 0; i < tickEngine.count; i++) {
+                labelValues.add(tickEngine.dateTime(tickEngine.ticks[i]));
+            }
+        }
+        return labelValues;
     }
-    
+
+    // Moves the bounds onto the first and last bar of the tick window, O(1) on a sorted series
     protected List<LocalDateTime> supplyTickValues(Object range) {
         if (!(range instanceof Range)) {
             System.out.println("Range is not of type Range");
             return List.of(); // Return an empty list if range is invalid
         }
-    
-        Range r = (Range) range;
-    
-        if (this.dataset == null || this.dataset == null || this.dataset.isEmpty()) {
-            System.out.println("OHLC Data List is empty or not initialized.");
-            return List.of();
-        }
-    
-        List<LocalDateTime> tickValues = new ArrayList<>();
-        this.dataset.sort((a, b) -> a.getDateTime().compareTo(b.getDateTime()));
-        for (int i = this.dataset.size() - MAX_TICK_COUNT; i != this.dataset.size(); i++){
-            tickValues.add(this.dataset.get(i).getDateTime());
+        if (this.dataset == null || this.dataset.isEmpty()) {
+            return List.of(); // No bars yet, e.g. while the history is still loading
         }
-        LocalDateTime max = LocalDateTime.MIN;
-        LocalDateTime min = LocalDateTime.MAX;
-        for (LocalDateTime data : tickValues){
-            if (data.isBefore(min)){
-                min = data;
-            }
-            if (data.isAfter(max)){
-                max = data;
-            }
-
+        this.dataset.ensureSorted();
+        long first = this.dataset.time(windowStart());
+        long last = this.dataset.time(windowEnd() - 1);
+        boolean indicesMoved = lowerIndex != windowStart() || upperIndex != windowEnd() - 1;
+        lowerIndex = windowStart();
+        upperIndex = windowEnd() - 1;
+        if (first != lowerMillis || last != upperMillis || this.range.lowerBound == null) {
+            setRange(new Range(BarSeries.toDateTime(first), BarSeries.toDateTime(last)), false);
+        } else if (indicesMoved) {
+            updateTransform();
+            invalidateRange();
+            requestAxisLayout();
         }
-        setRange(new Range(min,max), false);
-        tickValues.sort(LocalDateTime::compareTo); // Ensure tick marks are in chronological order
-        //System.out.println("Tickvaluesize = " + tickValues.size());
         return tickValues;
     }
 
@@ -196,163 +318,134 @@ catch (Exception e){
 
     @Override
     public ObservableList<TickMark<LocalDateTime>> getTickMarks() {
-        ObservableList<TickMark<LocalDateTime>> tickMarks = FXCollections.observableArrayList();
-        
         if (range == null || range.lowerBound == null || range.upperBound == null) {
-            return FXCollections.observableArrayList(); // Return an empty list if range is invalid
+            tickMarkList.clear();
+            return tickMarkList;
         }
-    
-        for (int i = 0; i < this.tickValues.size(); i++) {
-            if (MAX_TICK_COUNT > 20 && MAX_TICK_COUNT < 50) {
-
-                if (i % 5 == 0) { // Add every 5th tick mark
-                    
-                    LocalDateTime tickValue = this.tickValues.get(i);
-                    double position = getDisplayPosition(tickValue);
-                    TickMark<LocalDateTime> tickMark = new TickMark<>();
-                    tickMark.setValue(tickValue);
-                    tickMark.setPosition(position);
-                    
-                    //System.out.println("Generated tick mark: " + tickValue + " at position: " + position);
-                    tickMarks.add(tickMark);
-                }
-
-
-            }
-            else if(MAX_TICK_COUNT < 20&& MAX_TICK_COUNT < 100 && MAX_TICK_COUNT > 5){
-                
-                if (i % 2 == 0) { // Add every 5th tick mark
-                    
-                    LocalDateTime tickValue = this.tickValues.get(i);
-                    double position = getDisplayPosition(tickValue);
-                    TickMark<LocalDateTime> tickMark = new TickMark<>();
-                    tickMark.setValue(tickValue);
-                    tickMark.setPosition(position);
-                    
-                    //System.out.println("Generated tick mark: " + tickValue + " at position: " + position);
-                    tickMarks.add(tickMark);
-                }
-            }
-            else if (50<MAX_TICK_COUNT && MAX_TICK_COUNT < 100) {
-                
-                if (i % 10 == 0) { // Add every 5th tick mark
-                    
-                    LocalDateTime tickValue = this.tickValues.get(i);
-                    double position = getDisplayPosition(tickValue);
-                    TickMark<LocalDateTime> tickMark = new TickMark<>();
-                    tickMark.setValue(tickValue);
-                    tickMark.setPosition(position);
-                    
-                    //System.out.println("Generated tick mark: " + tickValue + " at position: " + position);
-                    tickMarks.add(tickMark);
-                }
-
-
-            }
-
-            else if (MAX_TICK_COUNT > 100&& MAX_TICK_COUNT < 200) {
-                
-                if (i % 20 == 0) { // Add every 5th tick mark
-                    
-                    LocalDateTime tickValue = this.tickValues.get(i);
-                    double position = getDisplayPosition(tickValue);
-                    TickMark<LocalDateTime> tickMark = new TickMark<>();
-                    tickMark.setValue(tickValue);
-                    tickMark.setPosition(position);
-                    
-                    //System.out.println("Generated tick mark: " + tickValue + " at position: " + position);
-                    tickMarks.add(tickMark);
-                }
-
+        double length = getSide().isHorizontal() ? getWidth() : getHeight();
+        int count;
+        if (ordinal) {
+            computeOrdinalTicks(length);
+            count = ordinalCount;
+        } else {
+            count = tickEngine.compute(lowerMillis, upperMillis, length, minTickSpacing);
+        }
+        // The same TickMark instances are moved to the new ticks, the list only grows or shrinks at the end
+        while (tickMarkList.size() > count) {
+            tickMarkList.remove(tickMarkList.size() - 1);
+        }
+        while (tickMarkList.size() < count) {
+            tickMarkList.add(new TickMark<>());
+        }
+        for (int i = 0; i < count; i++) {
+            long tick = ordinal ? dataset.time(ordinalTicks[i]) : tickEngine.ticks[i];
+            TickMark<LocalDateTime> tickMark = tickMarkList.get(i);
+            tickMark.setValue(tickEngine.dateTime(tick));
+            tickMark.setLabel(tickEngine.label(tick));
+            tickMark.setPosition(ordinal ? getIndexPosition(ordinalTicks[i]) : getDisplayPosition(tick));
+        }
+        return tickMarkList;
+    }
 
+    /**
+     * Picks ordinal ticks: the time step is chosen for the time the bars would span without gaps, and each tick
+     * moves to the first bar at or after it. Ticks in a gap land on the bar that ends it, duplicates and ticks
+     * closer than half the label spacing are dropped. O(ticks log n).
+     */
+    private void computeOrdinalTicks(double length) {
+        ordinalCount = 0;
+        int first = (int) Math.max(0, Math.ceil(lowerIndex));
+        int last = (int) Math.min(dataset.size() - 1, Math.floor(upperIndex));
+        if (last <= first || length <= 0) {
+            return;
+        }
+        // Typical bar interval, the median of a few evenly spread samples so gaps do not count
+        int samples = Math.min(intervalSamples.length, last - first);
+        for (int i = 0; i < samples; i++) {
+            int index = first + (int) ((long) (last - first) * i / samples);
+            intervalSamples[i] = dataset.time(index + 1) - dataset.time(index);
+        }
+        Arrays.sort(intervalSamples, 0, samples);
+        long gapless = intervalSamples[samples / 2] * (last - first);
+        double timeLength = gapless > 0 ? length * ((double) (upperMillis - lowerMillis) / gapless) : length;
+        tickEngine.compute(lowerMillis, upperMillis, timeLength, minTickSpacing);
+        boolean wholeDays = tickEngine.granularity >= TimeTickEngine.DAYS;
+        double lastPosition = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < tickEngine.count; i++) {
+            long tick = tickEngine.ticks[i];
+            if (sessions != null && wholeDays && !sessions.isTradingTime(tick)) {
+                continue;
             }
-            else if (MAX_TICK_COUNT > 200 && MAX_TICK_COUNT < 500) {
-                
-                if (i % 50 == 0) { // Add every 5th tick mark
-                    
-                    LocalDateTime tickValue = this.tickValues.get(i);
-                    double position = getDisplayPosition(tickValue);
-                    TickMark<LocalDateTime> tickMark = new TickMark<>();
-                    tickMark.setValue(tickValue);
-                    tickMark.setPosition(position);
-                    
-                    //System.out.println("Generated tick mark: " + tickValue + " at position: " + position);
-                    tickMarks.add(tickMark);
-                }
-
-
+            int index = dataset.indexAtOrAfter(tick);
+            if (index > last) {
+                break;
             }
-
-            else if (MAX_TICK_COUNT > 500) {
-                
-                if (i % 100 == 0) { // Add every 5th tick mark
-                    
-                    LocalDateTime tickValue = this.tickValues.get(i);
-                    double position = getDisplayPosition(tickValue);
-                    TickMark<LocalDateTime> tickMark = new TickMark<>();
-                    tickMark.setValue(tickValue);
-                    tickMark.setPosition(position);
-                    
-                    //System.out.println("Generated tick mark: " + tickValue + " at position: " + position);
-                    tickMarks.add(tickMark);
-                }
-
-
+            double position = getIndexPosition(index);
+            boolean repeated = ordinalCount > 0 && index == ordinalTicks[ordinalCount - 1];
+            if (repeated || position - lastPosition < minTickSpacing / 2) {
+                continue;
             }
-            else if (tickMarks.size() >= MAX_TICK_COUNT) {
-                break; // Stop if we have enough tick marks
+            if (ordinalCount == ordinalTicks.length) {
+                ordinalTicks = Arrays.copyOf(ordinalTicks, ordinalCount * 2);
             }
-            else if ( MAX_TICK_COUNT < 5 || MAX_TICK_COUNT == 5) {
-                LocalDateTime tickValue = this.tickValues.get(i);
-                double position = getDisplayPosition(tickValue);
-                TickMark<LocalDateTime> tickMark = new TickMark<>();
-                tickMark.setValue(tickValue);
-                tickMark.setPosition(position);
-                
-                //System.out.println("Generated tick mark: " + tickValue + " at position: " + position);
-                tickMarks.add(tickMark);
+            ordinalTicks[ordinalCount++] = index;
+            lastPosition = position;
+        }
+    }
 
+    @Override
+    public double getDisplayPosition(LocalDateTime dateTime) {
+        return getDisplayPosition(BarSeries.toEpochMillis(dateTime));
+    }
 
-            }
+    // A single multiply-add, no calendar arithmetic. In ordinal mode the bar at or after the time is found first
+    public double getDisplayPosition(long epochMillis) {
+        if (ordinal) {
+            return getIndexPosition(dataset.indexAtOrAfter(epochMillis));
+        }
+        return (epochMillis - lowerMillis) * scale;
+    }
 
+    public double getDisplayPosition(double epochMillis) {
+        if (ordinal) {
+            return getDisplayPosition((long) Math.ceil(epochMillis));
         }
-        return tickMarks;
+        return (epochMillis - lowerMillis) * scale;
     }
 
-    @Override
-    public double getDisplayPosition(LocalDateTime dateTime) {
-        if (range == null || range.lowerBound == null || range.upperBound == null) {
-            return 0;
+    // Epoch milliseconds at a pixel position, the inverse of getDisplayPosition
+    public double getMillisForDisplay(double displayPosition) {
+        if (ordinal) {
+            return dataset.time(clampIndex(Math.round(getIndexForDisplay(displayPosition))));
         }
-        
+        return scale == 0 ? lowerMillis : lowerMillis + displayPosition / scale;
+    }
 
-        long totalRangeMinutes = range.lowerBound.until(range.upperBound, ChronoUnit.MINUTES);
-        if (totalRangeMinutes <= 0) return 0; // Prevent division by zero
-    
-        double axisLength = getSide().isHorizontal() ? getWidth() : getHeight();
-        long elapsedMinutes = range.lowerBound.until(dateTime, ChronoUnit.MINUTES);
-        
-        double position = (elapsedMinutes / (double) totalRangeMinutes) * axisLength;
-    
-        //System.out.println("Calculated display position for " + dateTime + ": " + position);
-        return position;
+    private int clampIndex(long index) {
+        return (int) Math.max(0, Math.min(dataset.size() - 1, index));
     }
 
 
 
     public double getCandlePos(LocalDateTime dateTime) {
-        if (range == null || range.lowerBound == null || range.upperBound == null) {
-            return 0;
-        }
-    
-        // Fetch tick values once instead of calling supplyTickValues repeate
-        for (LocalDateTime tickMark : this.tickMarks) {
-            if (tickMark.equals(dateTime)) {
-                return getDisplayPosition(tickMark) + 15;
-            }
+        return getCandleCenter(BarSeries.toEpochMillis(dateTime));
+    }
+
+    // Pixel center of the candle of a bar, O(1) for any bar whether or not it is a tick
+    public double getCandleCenter(BarSource series, int index) {
+        return getCandleCenter(series, index, 0);
+    }
+
+    // Candle of a merged bar of a BarPyramid level, which covers 2^level bars of the dataset from index << level
+    public double getCandleCenter(BarSource series, int index, int level) {
+        if (ordinal) {
+            return getIndexPosition((double) ((long) index << level)) + CANDLE_OFFSET;
         }
-        //this.tickMarks.add(dateTime);
-        return 0.0;
+        return getCandleCenter(series.time(index));
+    }
+
+    public double getCandleCenter(long epochMillis) {
+        return getDisplayPosition(epochMillis) + CANDLE_OFFSET;
     }
 
 @Override
@@ -360,20 +453,22 @@ public LocalDateTime getValueForDisplay(double displayPosition) {
     if (range == null || range.lowerBound == null || range.upperBound == null) {
         return null;
     }
+    if (dataset == null || dataset.isEmpty()) {
+        return range.lowerBound;
+    }
 
-    List<TickMark<LocalDateTime>> tickMarks = getTickMarks();
-    TickMark<LocalDateTime> closestTick = null;
-    double minDistance = Double.MAX_VALUE;
-
-    for (TickMark<LocalDateTime> tickMark : tickMarks) {
-        double distance = Math.abs(tickMark.getPosition() - displayPosition);
-        if (distance < minDistance) {
-            minDistance = distance;
-            closestTick = tickMark;
-        }
+    if (ordinal) {
+        return dataset.dateTime(clampIndex(Math.round(getIndexForDisplay(displayPosition - CANDLE_OFFSET))));
     }
 
-    return closestTick != null ? closestTick.getValue() : range.lowerBound;
+    // The bar whose candle center is closest, found by binary search on the sorted time column
+    double millis = getMillisForDisplay(displayPosition - CANDLE_OFFSET);
+    int after = Math.min(dataset.indexAtOrAfter((long) Math.ceil(millis)), dataset.size() - 1);
+    int closest = after;
+    if (after > 0 && millis - dataset.time(after - 1) < dataset.time(after) - millis) {
+        closest = after - 1;
+    }
+    return dataset.dateTime(closest);
 }
 
     @Override
@@ -383,12 +478,12 @@ public LocalDateTime getValueForDisplay(double displayPosition) {
 
     @Override
     public double toNumericValue(LocalDateTime dateTime) {
-        return range.lowerBound.until(dateTime, java.time.temporal.ChronoUnit.MINUTES);
+        return BarSeries.toEpochMillis(dateTime) - lowerMillis; // Milliseconds past the lower bound
     }
 
     @Override
     public LocalDateTime toRealValue(double v) {
-        return range.lowerBound.plusMinutes((long) v);
+        return BarSeries.toDateTime(lowerMillis + (long) v);
     }
 
     @Override
@@ -397,14 +492,8 @@ public LocalDateTime getValueForDisplay(double displayPosition) {
             return "";
         }
 
-        long rangeInMinutes = range.lowerBound.until(range.upperBound, java.time.temporal.ChronoUnit.MINUTES);
-        if (rangeInMinutes < 1440) { // Less than a day (1440 minutes)
-            return dateTime.format(java.time.format.DateTimeFormatter.ofPattern("HH:mm"));
-        } else if (rangeInMinutes < 10080) { // Less than a week (10080 minutes)
-            return dateTime.format(java.time.format.DateTimeFormatter.ofPattern("MM-dd HH:mm"));
-        } else {
-            return dateTime.format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-        }
+        // Formatted once per tick time and granularity, a pan over known ticks formats nothing
+        return tickEngine.label(BarSeries.toEpochMillis(dateTime));
     }
 
     public void invalidateRangeInternal(LocalDateTime[] l) {
@@ -0,0 +1,306 @@
+package com.jat.ctfxplotsplus;
+
+import javafx.application.Platform;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Routes live bar updates of many symbols from feed threads to any number of charts.
+ *
+ * <p>Symbols are interned once into an integer id with {@link #symbolId(String)}; publishing by id is an array
+ * lookup with no string handling. Every symbol has its own lock-free single-producer channel: closed bars go
+ * through a ring buffer in order, while updates to the forming bar are conflated into one slot where the latest
+ * value wins, so a burst of a thousand updates to one bar crosses to the FX thread as one. A symbol with pending
+ * updates is marked once, and a single drain per burst on the FX thread moves every marked symbol into its
+ * subscribed charts, which coalesce their redraws into the next pulse.</p>
+ *
+ * <p>Each symbol must be published from one thread at a time, e.g. the connection that receives it; different
+ * symbols may be published from different threads. A bar older than the forming bar is passed through in order
+ * and inserted by the chart. Subscriptions may change from any thread.</p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * FeedHub hub = new FeedHub();
+ * hub.subscribe(chart); // by the symbol of the chart's bars
+ * int aapl = hub.symbolId("AAPL");
+ * // On the feed thread
+ * hub.publish(aapl, epochMillis, open, high, low, close, volume);
+ * }
+ * </pre>
+ * </p>
+ *
+ * <p>Methods:
+ * <ul>
+ * <li>{@link #symbolId(String)} - Interns a symbol, case and surrounding whitespace are ignored.</li>
+ * <li>{@link #publish(int, long, double, double, double, double, double)} - Publishes a bar update of a symbol.</li>
+ * <li>{@link #subscribe(OHLCChart)} - Feeds a chart with the updates of its symbol, charts without one use {@link #subscribe(String, OHLCChart)}.</li>
+ * <li>{@link #unsubscribe(OHLCChart)} - Stops feeding a chart, e.g. when it is closed.</li>
+ * <li>{@link #getSymbolCount()} - Returns how many symbols have been interned.</li>
+ * <li>{@link #getConflated()} - Returns how many forming bar updates were superseded before reaching the FX thread.</li>
+ * <li>{@link #getStalls()} - Returns how often a producer waited on a full ring.</li>
+ * </ul>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class FeedHub {
+    public static final int RING_CAPACITY = 1024; // Closed bars buffered per symbol, a power of two
+
+    private final ConcurrentHashMap<String, Channel> bySymbol = new ConcurrentHashMap<>();
+    private volatile Channel[] channels = new Channel[0];
+    private final ConcurrentLinkedQueue<Channel> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainPosted = new AtomicBoolean(false);
+
+    // One symbol, written by its feed thread and read by the FX thread
+    private static final class Channel {
+        final int id;
+        final String symbol;
+        volatile OHLCChart[] subscribers = new OHLCChart[0];
+        final AtomicBoolean queued = new AtomicBoolean(false);
+
+        // Closed bars, a single-producer single-consumer ring
+        final long[] times = new long[RING_CAPACITY];
+        final double[] opens = new double[RING_CAPACITY];
+        final double[] highs = new double[RING_CAPACITY];
+        final double[] lows = new double[RING_CAPACITY];
+        final double[] closes = new double[RING_CAPACITY];
+        final double[] volumes = new double[RING_CAPACITY];
+        volatile long published = 0;
+        volatile long consumed = 0;
+
+        // The forming bar, a sequence lock: odd while the producer writes it
+        volatile long sequence = 0;
+        volatile long seenSequence = 0; // Last sequence the consumer applied
+        long slotTime;
+        double slotOpen, slotHigh, slotLow, slotClose, slotVolume;
+
+        // Producer side copy of the forming bar
+        boolean forming = false;
+        long formingTime;
+        double formingOpen, formingHigh, formingLow, formingClose, formingVolume;
+        long conflated = 0;
+        long stalls = 0;
+
+        Channel(int id, String symbol) {
+            this.id = id;
+            this.symbol = symbol;
+        }
+    }
+
+    // Same symbol regardless of case and surrounding whitespace
+    public static String normalize(String symbol) {
+        return symbol.strip().toLowerCase(Locale.ROOT);
+    }
+
+    public int symbolId(String symbol) {
+        return channel(symbol).id;
+    }
+
+    private Channel channel(String symbol) {
+        return bySymbol.computeIfAbsent(normalize(symbol), this::register);
+    }
+
+    // Called once per new symbol inside computeIfAbsent
+    private synchronized Channel register(String symbol) {
+        Channel[] grown = Arrays.copyOf(channels, channels.length + 1);
+        Channel channel = new Channel(grown.length - 1, symbol);
+        grown[channel.id] = channel;
+        channels = grown;
+        return channel;
+    }
+
+    public void publish(String symbol, long epochMillis, double open, double high, double low, double close,
+                        double volume) {
+        publish(symbolId(symbol), epochMillis, open, high, low, close, volume);
+    }
+
+    public void publish(int symbolId, long epochMillis, double open, double high, double low, double close,
+                        double volume) {
+        Channel channel = channels[symbolId];
+        if (!channel.forming || epochMillis > channel.formingTime) {
+            // A newer bar closes the forming one, which goes through the ring with its final values
+            if (channel.forming) {
+                push(channel, channel.formingTime, channel.formingOpen, channel.formingHigh, channel.formingLow,
+                        channel.formingClose, channel.formingVolume);
+            }
+            channel.forming = true;
+            channel.formingTime = epochMillis;
+        } else if (epochMillis < channel.formingTime) {
+            // A late bar is passed through in order, the chart inserts it
+            push(channel, epochMillis, open, high, low, close, volume);
+            signal(channel);
+            return;
+        }
+        channel.formingOpen = open;
+        channel.formingHigh = high;
+        channel.formingLow = low;
+        channel.formingClose = close;
+        channel.formingVolume = volume;
+        writeSlot(channel);
+        signal(channel);
+    }
+
+    private void push(Channel channel, long time, double open, double high, double low, double close,
+                      double volume) {
+        long slot = channel.published;
+        while (slot - channel.consumed == RING_CAPACITY) {
+            // The FX thread is a whole ring behind, wait for it rather than drop a closed bar
+            channel.stalls++;
+            if (Platform.isFxApplicationThread()) {
+                drain(channel); // Publishing from the FX thread itself, waiting would never end
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        int i = (int) (slot & (RING_CAPACITY - 1));
+        channel.times[i] = time;
+        channel.opens[i] = open;
+        channel.highs[i] = high;
+        channel.lows[i] = low;
+        channel.closes[i] = close;
+        channel.volumes[i] = volume;
+        channel.published = slot + 1; // Volatile write publishes the slot
+    }
+
+    private static void writeSlot(Channel channel) {
+        long sequence = channel.sequence;
+        if (sequence != channel.seenSequence) {
+            channel.conflated++; // The previous value was never applied, the latest one wins
+        }
+        channel.sequence = sequence + 1;
+        VarHandle.storeStoreFence();
+        channel.slotTime = channel.formingTime;
+        channel.slotOpen = channel.formingOpen;
+        channel.slotHigh = channel.formingHigh;
+        channel.slotLow = channel.formingLow;
+        channel.slotClose = channel.formingClose;
+        channel.slotVolume = channel.formingVolume;
+        channel.sequence = sequence + 2;
+    }
+
+    // Marks the symbol as pending and posts one drain for the whole burst
+    private void signal(Channel channel) {
+        if (!channel.queued.get() && channel.queued.compareAndSet(false, true)) {
+            pending.offer(channel);
+        }
+        if (!drainPosted.get() && drainPosted.compareAndSet(false, true)) {
+            Platform.runLater(this::drain);
+        }
+    }
+
+    // Runs on the FX thread, moves every pending symbol into its subscribers
+    private void drain() {
+        drainPosted.set(false);
+        Channel channel;
+        while ((channel = pending.poll()) != null) {
+            channel.queued.set(false); // Updates published from here on mark the symbol again
+            drain(channel);
+        }
+    }
+
+    private void drain(Channel channel) {
+        // The forming slot is read before the ring, so every bar closed before it is in the ring already
+        long sequence;
+        long time;
+        double open, high, low, close, volume;
+        do {
+            sequence = channel.sequence;
+            while ((sequence & 1) != 0) {
+                Thread.onSpinWait();
+                sequence = channel.sequence;
+            }
+            time = channel.slotTime;
+            open = channel.slotOpen;
+            high = channel.slotHigh;
+            low = channel.slotLow;
+            close = channel.slotClose;
+            volume = channel.slotVolume;
+            VarHandle.loadLoadFence();
+        } while (sequence != channel.sequence);
+
+        OHLCChart[] subscribers = channel.subscribers;
+        long newestClosed = Long.MIN_VALUE;
+        long published = channel.published;
+        for (long slot = channel.consumed; slot < published; slot++) {
+            int i = (int) (slot & (RING_CAPACITY - 1));
+            long closedTime = channel.times[i];
+            newestClosed = Math.max(newestClosed, closedTime);
+            for (OHLCChart chart : subscribers) {
+                chart.updateData(closedTime, channel.opens[i], channel.highs[i], channel.lows[i],
+                        channel.closes[i], channel.volumes[i]);
+            }
+        }
+        channel.consumed = published;
+
+        // A slot no newer than a bar from the ring was read before that bar closed, the ring holds its final values
+        if (sequence != channel.seenSequence && sequence != 0 && time > newestClosed) {
+            for (OHLCChart chart : subscribers) {
+                chart.updateData(time, open, high, low, close, volume);
+            }
+        }
+        channel.seenSequence = sequence;
+    }
+
+    // Feeds a chart with the updates of the symbol of its bars
+    public void subscribe(OHLCChart chart) {
+        String symbol = chart.bars.getSymbol();
+        if (symbol == null) {
+            throw new IllegalArgumentException("Chart bars have no symbol, subscribe with subscribe(symbol, chart)");
+        }
+        subscribe(symbol, chart);
+    }
+
+    public void subscribe(String symbol, OHLCChart chart) {
+        Channel channel = channel(symbol);
+        synchronized (channel) {
+            OHLCChart[] subscribers = channel.subscribers;
+            OHLCChart[] grown = Arrays.copyOf(subscribers, subscribers.length + 1);
+            grown[subscribers.length] = chart;
+            channel.subscribers = grown;
+        }
+    }
+
+    // Removes a chart from every symbol it is subscribed to
+    public void unsubscribe(OHLCChart chart) {
+        for (Channel channel : channels) {
+            synchronized (channel) {
+                OHLCChart[] subscribers = channel.subscribers;
+                int kept = 0;
+                OHLCChart[] remaining = new OHLCChart[subscribers.length];
+                for (OHLCChart subscriber : subscribers) {
+                    if (subscriber != chart) {
+                        remaining[kept++] = subscriber;
+                    }
+                }
+                if (kept != subscribers.length) {
+                    channel.subscribers = Arrays.copyOf(remaining, kept);
+                }
+            }
+        }
+    }
+
+    public int getSymbolCount() {return channels.length;}
+
+    // Approximate totals, the counters belong to the feed threads
+    public long getConflated() {
+        long total = 0;
+        for (Channel channel : channels) {
+            total += channel.conflated;
+        }
+        return total;
+    }
+
+    public long getStalls() {
+        long total = 0;
+        for (Channel channel : channels) {
+            total += channel.stalls;
+        }
+        return total;
+    }
+}
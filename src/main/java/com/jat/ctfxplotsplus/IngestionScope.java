@@ -0,0 +1,132 @@
+package com.jat.ctfxplotsplus;
+
+import javafx.application.Platform;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Runs the history loads and feed connections of one chart, each on its own virtual thread, and cancels them
+ * together when the chart closes.
+ *
+ * <p>Every {@link #fork(Callable)} starts a virtual thread, so blocking reads of files and sockets cost no
+ * platform thread and any number of charts can load at once: opening fifty charts takes as long as the slowest load,
+ * not the sum of them. A scope owns its tasks the way a structured concurrency scope does: {@link #close()}
+ * interrupts every task still running, cancels their futures and refuses new ones, so nothing of a closed chart
+ * outlives it. Results are handed to the FX thread with {@link #fork(Callable, Consumer)}, which skips the hand-off
+ * once the scope is closed.</p>
+ *
+ * <p>A feed connection is a task that blocks until it is interrupted, e.g. a socket read loop publishing to a
+ * {@link FeedHub}; it should return or throw when its thread is interrupted.</p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * IngestionScope scope = new IngestionScope("AAPL");
+ * scope.fork(() -> plotHandler.readData(path), bars -> chart.setSeries(bars));
+ * scope.fork(() -> { connection.readLoop(hub); return null; });
+ * // When the chart closes
+ * scope.close();
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class IngestionScope implements AutoCloseable {
+    public final String name;
+
+    private final ExecutorService executor;
+    private final Set<CompletableFuture<?>> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed = false;
+
+    public IngestionScope(String name) {
+        this.name = name;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ctfx-" + name + "-", 0).factory());
+    }
+
+    // Runs a task on its own virtual thread, cancelling the future interrupts the task
+    public <T> CompletableFuture<T> fork(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (closed) {
+            result.cancel(false);
+            return result;
+        }
+        running.add(result);
+        try {
+            Future<?> future = executor.submit(() -> {
+                try {
+                    result.complete(task.call());
+                } catch (Throwable e) {
+                    result.completeExceptionally(closed ? new CancellationException(name + " closed") : e);
+                } finally {
+                    running.remove(result);
+                }
+            });
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    future.cancel(true);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.remove(result);
+            result.cancel(false); // Closed between the check and the submit
+        }
+        return result;
+    }
+
+    // Runs a task on its own virtual thread and hands its result to the FX thread unless the scope closed first
+    public <T> CompletableFuture<T> fork(Callable<T> task, Consumer<T> onFxThread) {
+        CompletableFuture<T> result = fork(task);
+        result.thenAccept(value -> Platform.runLater(() -> {
+            if (!closed) {
+                onFxThread.accept(value);
+            }
+        }));
+        result.exceptionally(error -> {
+            if (!closed) {
+                System.out.println("Ingestion task of " + name + " failed: " + error);
+            }
+            return null;
+        });
+        return result;
+    }
+
+    // Waits for every task forked so far, or until the scope closes
+    public void join() throws InterruptedException {
+        for (CompletableFuture<?> task : running.toArray(new CompletableFuture<?>[0])) {
+            try {
+                task.join();
+            } catch (RuntimeException e) {
+                // Failures are reported through each task's own future
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    public boolean isClosed() {return closed;}
+    public int getRunning() {return running.size();}
+
+    // Interrupts every running task and cancels its future, the scope accepts no new tasks
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (CompletableFuture<?> task : running.toArray(new CompletableFuture<?>[0])) {
+            task.cancel(true);
+        }
+        executor.shutdownNow(); // Returns at once, a closing chart never waits on its loads
+    }
+}
@@ -13,10 +13,11 @@ public class Main extends Application {
 
     @Override
     public void start(Stage stage) throws Exception {
-        
+        long start = System.nanoTime();
 
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/jat/ctfxplotsplus/mainscene.fxml"));
         Parent root = loader.load();
+        long fxmlLoaded = System.nanoTime();
         Scene scene = new Scene(root);
 
         // Add the CSS file to the scene
@@ -24,6 +25,9 @@ public class Main extends Application {
 
         stage.setScene(scene);
         stage.show();
+        // Data loads behind the shown window, PlotHandler logs the rest of the startup
+        System.out.printf("Startup: FXML loaded in %.1f ms, window shown at %.1f ms%n",
+                (fxmlLoaded - start) / 1e6, (System.nanoTime() - start) / 1e6);
     }
 
     public static void main(String[] args) {
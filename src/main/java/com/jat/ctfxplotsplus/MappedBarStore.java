@@ -0,0 +1,297 @@
+package com.jat.ctfxplotsplus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * An append-only, memory-mapped bar file, one per symbol, read by the chart without copying bars onto the heap.
+ *
+ * <p>The file is a {@value #HEADER_BYTES} byte header followed by fixed {@value #RECORD_BYTES} byte records
+ * (epoch-millisecond time, open, high, low, close, volume, little-endian). Records are mapped in segments of
+ * {@value #SEGMENT_BARS} bars on first access, so opening a store only reads the header and the chart only pages
+ * in the bars it actually draws. Heap use is a small array of segment mappings regardless of the bar count.</p>
+ *
+ * <p>Features:
+ * <ul>
+ * <li>Implements {@link BarSource}, the chart, axes and tooltip read columns straight from the page cache.</li>
+ * <li>Live appends are written to the tail of the file, the bar count in the header is updated with them.</li>
+ * <li>Bars must be appended in chronological order, so binary search works on the file as it is. Late bars go
+ * through {@link #upsert(long, double, double, double, double, double)}, which moves the bars after them.</li>
+ * <li>Read-only stores can be shared by several charts of the same symbol.</li>
+ * <li>Bars derived from a store, pyramid levels and rolled-up timeframes, go to temporary stores from
+ * {@link #createTemp(String)}, so a chart of a mapped history keeps no bars on the heap.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * try (MappedBarStore store = MappedBarStore.open(Path.of("AAPL.mbars"), "AAPL")) {
+ *     store.append(time, open, high, low, close, volume);
+ *     plotHandler.showOHLCChart(scrollPane, chartPane, true, store);
+ * }
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class MappedBarStore implements BarSource, Closeable {
+    public static final int MAGIC = 0x4354464D; // "CTFM"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 64;
+    public static final int RECORD_BYTES = 48;
+    public static final int SEGMENT_SHIFT = 16;
+    public static final int SEGMENT_BARS = 1 << SEGMENT_SHIFT;
+    public static final int SEGMENT_MASK = SEGMENT_BARS - 1;
+
+    private static final int MAX_SYMBOL_BYTES = 40;
+    private static final int COUNT_OFFSET = 8;
+    private static final int SYMBOL_OFFSET = 16;
+
+    private final FileChannel channel;
+    private final boolean writable;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private String symbol;
+    private int size;
+    private int version = 0; // Bumped when the store is cleared
+    private final ChangeLog changes = new ChangeLog(); // Late inserts and amends, derived data rebuilds from them
+    private boolean temporary = false; // Deleted on close, so never flushed
+
+    private MappedBarStore(FileChannel channel, boolean writable, String symbol) throws IOException {
+        this.channel = channel;
+        this.writable = writable;
+        boolean created = channel.size() == 0;
+        this.header = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        this.header.order(ByteOrder.LITTLE_ENDIAN);
+        if (created) {
+            writeHeader(symbol);
+        } else {
+            readHeader();
+        }
+    }
+
+    // Opens a store for reading and appending, the file is created when missing
+    public static MappedBarStore open(Path path, String symbol) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return new MappedBarStore(channel, true, symbol);
+    }
+
+    public static MappedBarStore openReadOnly(Path path) throws IOException {
+        return new MappedBarStore(FileChannel.open(path, StandardOpenOption.READ), false, null);
+    }
+
+    // Opens an empty store in a temporary file that is deleted when the store is closed or the JVM exits
+    public static MappedBarStore createTemp(String symbol) throws IOException {
+        Path path = Files.createTempFile("ctfx-", ".mbars");
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+        MappedBarStore store = new MappedBarStore(channel, true, symbol);
+        store.temporary = true;
+        return store;
+    }
+
+    // Merged levels and rolled-up timeframes of mapped bars are mapped as well, in temporary stores
+    @Override
+    public BarSource derived() {
+        try {
+            return createTemp(symbol);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create a temporary store for " + symbol, e);
+        }
+    }
+
+    // Closes a source when it is a temporary store, any other source is left to its owner
+    static void release(BarSource source) {
+        if (source instanceof MappedBarStore store && store.temporary) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                System.out.println("Could not close mapped bars of " + store.symbol + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void writeHeader(String symbol) {
+        byte[] bytes = (symbol == null ? "" : symbol).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_SYMBOL_BYTES) {
+            bytes = Arrays.copyOf(bytes, MAX_SYMBOL_BYTES);
+        }
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putLong(COUNT_OFFSET, 0);
+        header.put(SYMBOL_OFFSET, (byte) bytes.length);
+        header.put(SYMBOL_OFFSET + 1, bytes);
+        this.symbol = symbol;
+        this.size = 0;
+    }
+
+    private void readHeader() throws IOException {
+        if (channel.size() < HEADER_BYTES || header.getInt(0) != MAGIC) {
+            throw new IOException("Not a mapped bar store");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported mapped bar store version " + header.getInt(4));
+        }
+        long count = header.getLong(COUNT_OFFSET);
+        long stored = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+        if (count > stored || count > Integer.MAX_VALUE) {
+            throw new IOException("Truncated mapped bar store, header says " + count + " bars but the file holds " + stored);
+        }
+        byte[] bytes = new byte[header.get(SYMBOL_OFFSET) & 0xFF];
+        header.get(SYMBOL_OFFSET + 1, bytes);
+        this.symbol = new String(bytes, StandardCharsets.UTF_8);
+        this.size = (int) count;
+    }
+
+    // Maps a segment on first access, the segment of the tail is mapped to its full size when writable
+    private MappedByteBuffer segment(int index) {
+        if (index >= segments.length) {
+            segments = Arrays.copyOf(segments, Math.max(index + 1, segments.length * 2));
+        }
+        MappedByteBuffer segment = segments[index];
+        if (segment == null) {
+            long position = HEADER_BYTES + ((long) index << SEGMENT_SHIFT) * RECORD_BYTES;
+            try {
+                long length = writable ? (long) SEGMENT_BARS * RECORD_BYTES
+                        : Math.min((long) SEGMENT_BARS * RECORD_BYTES, channel.size() - position);
+                segment = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                        position, length);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not map bars of " + symbol, e);
+            }
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            segments[index] = segment;
+        }
+        return segment;
+    }
+
+    private double column(int i, int offset) {
+        return segment(i >>> SEGMENT_SHIFT).getDouble((i & SEGMENT_MASK) * RECORD_BYTES + offset);
+    }
+
+    @Override
+    public void append(long epochMillis, double open, double high, double low, double close, double volume) {
+        checkWritable();
+        if (size > 0 && epochMillis < time(size - 1)) {
+            throw new IllegalArgumentException("Bars must be appended in order, " + BarSeries.toDateTime(epochMillis)
+                    + " is before " + dateTime(size - 1));
+        }
+        write(size, epochMillis, open, high, low, close, volume);
+        size++;
+        header.putLong(COUNT_OFFSET, size); // Written after the record, a crash never exposes a partial bar
+    }
+
+    // Rewrites a stored record, used to amend the forming bar
+    @Override
+    public void set(int i, long epochMillis, double open, double high, double low, double close, double volume) {
+        checkWritable();
+        if (i < size - 1) {
+            changes.record(i);
+        }
+        write(i, epochMillis, open, high, low, close, volume);
+    }
+
+    // Moves later records up one slot with one bulk move per segment
+    @Override
+    public void insert(int i, long epochMillis, double open, double high, double low, double close, double volume) {
+        checkWritable();
+        if (i >= size) {
+            append(epochMillis, open, high, low, close, volume); // Nothing to move, also covers an empty source
+            return;
+        }
+        int last = size - 1;
+        append(time(last), open(last), high(last), low(last), close(last), volume(last));
+        int end = last;
+        while (end > i) {
+            int index = (end - 1) >>> SEGMENT_SHIFT;
+            int start = Math.max(i, index << SEGMENT_SHIFT);
+            int records = end - start;
+            MappedByteBuffer segment = segment(index);
+            if (((end - 1) & SEGMENT_MASK) == SEGMENT_MASK) {
+                // The last record of a segment moves to the start of the next one
+                segment(index + 1).put(0, segment, SEGMENT_MASK * RECORD_BYTES, RECORD_BYTES);
+                records--;
+            }
+            int offset = (start & SEGMENT_MASK) * RECORD_BYTES;
+            segment.put(offset + RECORD_BYTES, segment, offset, records * RECORD_BYTES); // Overlap safe
+            end = start;
+        }
+        write(i, epochMillis, open, high, low, close, volume);
+        changes.record(i);
+    }
+
+    // Drops every bar, the file keeps its size until it is closed
+    @Override
+    public void clear() {
+        checkWritable();
+        size = 0;
+        header.putLong(COUNT_OFFSET, 0);
+        version++;
+    }
+
+    private void write(int i, long epochMillis, double open, double high, double low, double close, double volume) {
+        MappedByteBuffer segment = segment(i >>> SEGMENT_SHIFT);
+        int offset = (i & SEGMENT_MASK) * RECORD_BYTES;
+        segment.putLong(offset, epochMillis);
+        segment.putDouble(offset + 8, open);
+        segment.putDouble(offset + 16, high);
+        segment.putDouble(offset + 24, low);
+        segment.putDouble(offset + 32, close);
+        segment.putDouble(offset + 40, volume);
+    }
+
+    private void checkWritable() {
+        if (!writable) {
+            throw new UnsupportedOperationException("Mapped bar store of " + symbol + " is read-only");
+        }
+    }
+
+    @Override public String getSymbol() {return symbol;}
+    @Override public int size() {return size;}
+    @Override public int version() {return version;}
+    @Override public int changeCount() {return changes.count();}
+    @Override public int changedFrom(int sinceChangeCount) {return changes.lowestSince(sinceChangeCount);}
+    @Override public boolean isSorted() {return true;}
+    @Override public void ensureSorted() {}
+
+    @Override public long time(int i) {return segment(i >>> SEGMENT_SHIFT).getLong((i & SEGMENT_MASK) * RECORD_BYTES);}
+    @Override public double open(int i) {return column(i, 8);}
+    @Override public double high(int i) {return column(i, 16);}
+    @Override public double low(int i) {return column(i, 24);}
+    @Override public double close(int i) {return column(i, 32);}
+    @Override public double volume(int i) {return column(i, 40);}
+
+    // Flushes appended bars to disk
+    public void force() {
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null && writable) {
+                segment.force();
+            }
+        }
+        if (writable) {
+            header.force();
+        }
+    }
+
+    // Trims the unused tail of the last segment and closes the file, mappings are released by the garbage collector
+    @Override
+    public void close() throws IOException {
+        if (writable && !temporary) {
+            force();
+            channel.truncate(HEADER_BYTES + (long) size * RECORD_BYTES);
+        }
+        segments = new MappedByteBuffer[0];
+        channel.close();
+    }
+}
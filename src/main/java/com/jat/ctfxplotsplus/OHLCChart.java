@@ -13,11 +13,9 @@ import javafx.scene.paint.Color;
 
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
-import java.util.ArrayList;
 
 import java.util.List;
 
-import java.util.concurrent.CompletableFuture;
 
 
 /**
@@ -30,8 +28,14 @@ import java.util.concurrent.CompletableFuture;
  * <ul>
  * <li>Displays OHLC data as candlesticks with customizable colors based on the close value.</li>
  * <li>Supports zooming on both X and Y axes using mouse scroll events.</li>
+ * <li>Pans by dragging, with a kinetic glide on release, and zooms time around the cursor with a {@link ViewportController}.</li>
  * <li>Displays tooltips with OHLC data when hovering over candlesticks.</li>
+ * <li>Keeps candles on a cached layer, tooltips, crosshair, last price and selection live on a {@link ChartOverlay}.</li>
  * <li>Handles large datasets by rendering candlesticks incrementally.</li>
+ * <li>Coalesces live updates, axis changes and hover events into at most one render per pulse with a {@link RenderScheduler}.</li>
+ * <li>Builds bars from raw trades or quotes with a {@link TickAggregator}, drained once per pulse.</li>
+ * <li>Can be fed by a multi-symbol {@link FeedHub} via {@code hub.subscribe(chart)}, which conflates forming bar updates before the FX thread.</li>
+ * <li>Draws merged bars from a {@link BarPyramid} level when more bars than pixels are visible.</li>
  * </ul>
  * </p>
  * 
@@ -40,37 +44,43 @@ import java.util.concurrent.CompletableFuture;
  * {@code
  * DateTimeAxis xAxis = new DateTimeAxis();
  * CurrencyAxis yAxis = new CurrencyAxis();
- * ObservableList<OHLCData> ohlcDataList = FXCollections.observableArrayList();
+ * BarSeries bars = new BarSeries("AAPL");
  * AnchorPane pane = new AnchorPane();
- * OHLCChart chart = new OHLCChart(xAxis, yAxis, ohlcDataList, pane);
+ * OHLCChart chart = new OHLCChart(xAxis, yAxis, bars, pane);
  * }
  * </pre>
  * </p>
  * 
  * <p>Methods:
  * <ul>
- * <li>{@link #OHLCChart(DateTimeAxis, CurrencyAxis, ObservableList, AnchorPane)} - Constructor to initialize the chart.</li>
- * <li>{@link #setSeries(ObservableList)} - Sets the data series for the chart.</li>
+ * <li>{@link #OHLCChart(DateTimeAxis, CurrencyAxis, BarSource, AnchorPane)} - Constructor to initialize the chart.</li>
+ * <li>{@link #setSeries(BarSource)} - Sets the bars for the chart, a heap {@link BarSeries} or a {@link MappedBarStore}.</li>
  * <li>{@link #layoutPlotChildren()} - Lays out the plot children for rendering.</li>
  * <li>{@link #getCanvas()} - Returns the canvas used for drawing.</li>
+ * <li>{@link #getOverlay()} - Returns the overlay layer drawn above the candles.</li>
+ * <li>{@link #invalidateCandles()} - Forces the cached candle layer to be redrawn on the next layout.</li>
  * <li>{@link #getChartData()} - Returns the current chart data.</li>
  * <li>{@link #getDataMinMax()} - Returns the minimum and maximum dates in the data.</li>
  * <li>{@link #getDataMinMaxy()} - Returns the minimum and maximum values in the data.</li>
  * <li>{@link #addToolTipListener()} - Adds a listener for displaying tooltips on mouse hover.</li>
- * <li>{@link #clearTooltip()} - Clears the tooltip from the canvas.</li>
- * <li>{@link #drawTooltip(GraphicsContext, String, double, double)} - Draws a tooltip on the canvas.</li>
- * <li>{@link #drawCandleStick(GraphicsContext, OHLCData)} - Draws a candlestick on the canvas.</li>
+ * <li>{@link #clearTooltip()} - Clears the tooltip from the overlay.</li>
+ * <li>{@link #batchCandleStick(BarSource, int, double)} - Queues the candlestick of a bar index in the batched renderer.</li>
+ * <li>{@link #getLastFrameNanos()} - Returns the time spent drawing the last frame.</li>
+ * <li>{@link #getScheduler()} - Returns the render scheduler and its coalesced and dropped redraw counters.</li>
+ * <li>{@link #setTickAggregator(TickAggregator)} - Feeds the chart from raw ticks aggregated into bars.</li>
+ * <li>{@link #setTimeframe(Timeframe)} - Switches between cached rolled-up timeframes of the same base series.</li>
+ * <li>{@link #setOrdinalAxis(boolean)} - Spaces bars evenly by index so nights, weekends and holidays take no room.</li>
+ * <li>{@link #setSessionCalendar(SessionCalendar)} - Puts day ticks on the session opens of a market.</li>
+ * <li>{@link #prependHistory(BarSeries)} - Puts older history in front of the shown bars without moving the view.</li>
+ * <li>{@link #updateData(long, double, double, double, double, double)} - Applies a live bar, callable from any thread.</li>
+ * <li>{@link #getLastUpdateLagNanos()} - Returns how long the last drained update waited for a frame.</li>
+ * <li>{@link #stopRendering()} - Stops the render scheduler when the chart is discarded.</li>
+ * <li>{@link #whenCandlesDrawn(Runnable)} - Runs an action once after the next frame that draws the candles.</li>
  * <li>{@link #calculateCandleWidth()} - Calculates the width of a candlestick.</li>
  * <li>{@link #calculateCandleHeight(Double, Double)} - Calculates the height of a candlestick.</li>
  * </ul>
  * </p>
  * 
- * <p>Inner Classes:
- * <ul>
- * <li>{@link CandleStick} - Represents a candlestick with its position, dimensions, and tooltip text.</li>
- * </ul>
- * </p>
- * 
  * <p>Overrides:
  * <ul>
  * <li>{@link #updateAxisRange()} - [DEPRECATED] Call xAxis, or yAxis.setBounds(lower,upper) to updates the axis range.</li>
@@ -84,7 +94,7 @@ import java.util.concurrent.CompletableFuture;
  * 
  * @param xAxis The X-axis representing time.
  * @param yAxis The Y-axis representing price.
- * @param ohlcDataList The list of OHLC data points.
+ * @param bars The OHLC bars, a heap {@link BarSeries} or a memory-mapped {@link MappedBarStore}.
  * @param pane The AnchorPane to contain the chart.
  * 
  * @author Aidan Korczynski
@@ -94,15 +104,55 @@ import java.util.concurrent.CompletableFuture;
 
 public class OHLCChart extends XYChart<LocalDateTime, Double> {
     public Canvas canvas;
-    public ObservableList<OHLCData> ohlcDataList;
+    public BarSource bars;
     protected CurrencyAxis yAxis;
     protected DateTimeAxis xAxis;
     public AnchorPane pane;
-    public CandleStick activeCandlestick = null; // Track the current candlestick
-    private ArrayList<CandleStick> candlesticks = new ArrayList<>();
+    public int activeCandle = -1; // Renderer slot of the hovered candle, -1 when none
+    private final TooltipFormatter tooltipFormatter = new TooltipFormatter();
+    private final StringBuilder lastPriceText = new StringBuilder(16);
+    private double lastPriceValue = Double.NaN;
+    private String lastPriceLabel = "";
+    private BarSource renderedSeries; // Pyramid level the renderer slots refer to
+    private int visibleFirst = 0; // First bar index inside the x-axis range
+    private int visibleLast = -1; // Last bar index inside the x-axis range
+    private BarPyramid pyramid;
+    private int renderLevel = 0; // Pyramid level drawn in the last layout, 0 is the base series
+    public final CandleRenderer renderer = new CandleRenderer();
+    private long lastFrameNanos = 0;
+    public ChartOverlay overlay;
+    public ViewportController viewport;
+    private boolean candlesDirty = true; // Set when bars change in place, the candle layer is redrawn on the next layout
+    private boolean formingDirty = false; // Only the last bar was amended, just its candle is repainted
+    private long drawnLower = Long.MIN_VALUE; // Viewport the candle layer was last drawn for
+    private long drawnUpper = Long.MIN_VALUE;
+    private double drawnYLower = Double.NaN;
+    private double drawnYUpper = Double.NaN;
+    private double drawnWidth = -1;
+    private double drawnHeight = -1;
+    private int drawnTickCount = -1;
+    private int drawnSize = -1;
+    private int drawnVersion = -1;
+    private double selectionAnchor = Double.NaN;
+    public final RenderScheduler scheduler = new RenderScheduler(this::renderFrame);
+    private TickAggregator tickAggregator; // Live tick feed drained into the bars once per pulse
+    private Runnable candlesDrawnAction; // Run once after the next full candle draw
+    private final BarQueue updates = new BarQueue(); // Updates from other threads, drained once per pulse
+    private int drainFlags = 0;
+    private final BarQueue.Sink drainSink = (t, o, h, l, c, v) -> drainFlags |= applyUpdate(t, o, h, l, c, v);
+    private long lastUpdateLagNanos = 0;
+    private BarResampler resampler; // Set once a timeframe is chosen, live updates go to its base series
+    private Timeframe timeframe; // Displayed timeframe, null shows the base series
+    private double pendingLow = Double.MAX_VALUE; // Close range of updates not yet applied to the y-axis
+    private double pendingHigh = -Double.MAX_VALUE;
     public OHLCChart(DateTimeAxis xAxis, CurrencyAxis yAxis, ObservableList<OHLCData> ohlcDataList, AnchorPane pane) {
+        this(xAxis, yAxis, BarSeries.of(ohlcDataList), pane);
+    }
+
+    public OHLCChart(DateTimeAxis xAxis, CurrencyAxis yAxis, BarSource bars, AnchorPane pane) {
         super(xAxis, yAxis);
-        this.ohlcDataList = ohlcDataList;
+        this.bars = bars;
+        this.pyramid = new BarPyramid(bars);
         this.yAxis = yAxis;
         this.xAxis = xAxis;
         this.pane = pane;
@@ -123,6 +173,9 @@ public class OHLCChart extends XYChart<LocalDateTime, Double> {
             this.canvas.heightProperty().bind(pane.heightProperty());
             this.canvas.setMouseTransparent(true);
             this.getChildren().add(this.canvas);
+            this.overlay = new ChartOverlay(pane);
+            this.getChildren().add(this.overlay.canvas);
+            this.viewport = new ViewportController(this);
             this.setOnScroll(event -> {
                 double deltaY = event.getDeltaY();
                 if (event.isControlDown()) {
@@ -141,58 +194,21 @@ public class OHLCChart extends XYChart<LocalDateTime, Double> {
                     yAxis.range.lowerBound = newLowerY;
                     yAxis.range.upperBound = newUpperY;
                     yAxis.setBounds(newLowerY, newUpperY);
-                    layoutPlotChildren();
+                    scheduler.requestRender(RenderScheduler.CANDLES);
                     event.consume();
 
                 }
 
                 else {
-                    /*double lowerEpoch = toEpochMilli(xAxis.range.lowerBound);
-                    double upperEpoch = toEpochMilli(xAxis.range.upperBound);
-                    double xAxisRange = upperEpoch - lowerEpoch;
-
-                    double zoomFactor = deltaY > 0 ? 0.9 : 1.1; // Zoom in/out
-                    double newRange = xAxisRange * zoomFactor;
-                    double midpoint = lowerEpoch + xAxisRange / 2;
-
-                    long newLowerEpoch = (long) (midpoint - newRange / 2);
-                    long newUpperEpoch = (long) (midpoint + newRange / 2);
-
-                    //xAxis.range.lowerBound = LocalDateTime.ofEpochSecond(newLowerEpoch / 1000, 0, ZoneOffset.UTC);
-                    //xAxis.range.upperBound = LocalDateTime.ofEpochSecond(newUpperEpoch / 1000, 0, ZoneOffset.UTC);
-                        
-                    xAxis.setBounds(LocalDateTime.ofEpochSecond(newLowerEpoch / 1000, 0, ZoneOffset.UTC),
-                    xAxis.range.upperBound);*/
-                    if (deltaY > 0) {
-                        if (xAxis.MAX_TICK_COUNT > 30) {
-                            xAxis.MAX_TICK_COUNT = xAxis.MAX_TICK_COUNT + 10;
-                        }
-                        else{
-                            xAxis.MAX_TICK_COUNT = xAxis.MAX_TICK_COUNT + 1;
-
-
-                        }
-                    } else {
-                        if (xAxis.MAX_TICK_COUNT > 30) {
-                            xAxis.MAX_TICK_COUNT = xAxis.MAX_TICK_COUNT - 10;
-                        }
-                        else{
-                            xAxis.MAX_TICK_COUNT = xAxis.MAX_TICK_COUNT - 1;
-
-
-                        }
-                    } // Zoom in/out
-                    
-                    xAxis.setBounds(xAxis.range.lowerBound,
-                    xAxis.range.upperBound);
-                    xAxis.updateMarks();
-                    layoutPlotChildren();
-                    
+                    // Time zoom keeps the bar under the cursor in place, the cached layer is scaled until it settles
+                    viewport.zoom(event.getX(), deltaY);
                     event.consume();
                 }
 
             });
             addToolTipListener();
+            scheduler.start();
+            scheduler.requestRender(RenderScheduler.CANDLES);
         });
         // Incremental rendering
         // renderCandlesticksIncrementally();
@@ -209,33 +225,63 @@ public class OHLCChart extends XYChart<LocalDateTime, Double> {
 
         this.setOnMouseMoved(event -> {
             
-            boolean foundCandlestick = false; // Flag to track if we found a candlestick under the mouse
-           
-            for (CandleStick cstick : candlesticks) {
-                double topY = Math.min(cstick.y, cstick.y + cstick.height);
-                double bottomY = Math.max(cstick.y, cstick.y + cstick.height);
-        
-                if (event.getX() >= cstick.x && event.getX() <= cstick.x + cstick.width &&
-                    event.getY() >= topY && event.getY() <= bottomY) {
-        
-                    if (activeCandlestick != cstick) { // Only redraw if it's a different candlestick
-                        
-                        drawTooltip(this.canvas.getGraphicsContext2D(), cstick.tooltip, event.getX(), event.getY());
-                        activeCandlestick = cstick; // Update active tooltip
-                    }
-        
-                    foundCandlestick = true;
-                    break; // Stop checking other candlesticks
-                }
+            // Only the overlay is repainted on mouse movement, the candle layer stays cached
+            overlay.setMouse(event.getX(), event.getY());
+            if (viewport.isActive()) {
+                scheduler.requestRender(RenderScheduler.OVERLAY);
+                return; // The candles are moving, the renderer slots no longer match the screen
+            }
+            // Candles are laid out in x order, the renderer finds the one under the mouse by binary search
+            int slot = renderer.hitTest(event.getX(), event.getY());
+            if (slot != -1 && activeCandle != slot) { // Only move the tooltip if it's a different candlestick
+                // Tooltip text is built on demand for the hovered bar only
+                String text = tooltipFormatter.format(renderedSeries, renderer.barIndex(slot)).toString();
+                overlay.setTooltip(text, event.getX(), event.getY());
+                activeCandle = slot; // Update active tooltip
             }
         
             // If the mouse is not over any candlestick, clear the tooltip
-            if (!foundCandlestick && activeCandlestick != null) {
-                clearTooltip();
-                activeCandlestick = null;
+            if (slot == -1 && activeCandle != -1) {
+                overlay.clearTooltip();
+                activeCandle = -1;
             }
+            scheduler.requestRender(RenderScheduler.OVERLAY);
 
         });
+
+        this.setOnMouseExited(event -> {
+            overlay.clearMouse();
+            activeCandle = -1;
+            clearTooltip();
+        });
+
+        // Shift + drag marks a selection band on the overlay, a plain drag pans and a click clears the selection
+        this.setOnMousePressed(event -> {
+            if (event.isShiftDown()) {
+                selectionAnchor = event.getX();
+                overlay.setSelection(selectionAnchor, selectionAnchor);
+            } else {
+                selectionAnchor = Double.NaN;
+                overlay.clearSelection();
+                if (event.isPrimaryButtonDown()) {
+                    viewport.pressed(event.getX());
+                }
+            }
+            scheduler.requestRender(RenderScheduler.OVERLAY);
+        });
+        this.setOnMouseDragged(event -> {
+            overlay.setMouse(event.getX(), event.getY());
+            if (!Double.isNaN(selectionAnchor)) {
+                overlay.setSelection(selectionAnchor, event.getX());
+            } else {
+                viewport.dragged(event.getX());
+            }
+            scheduler.requestRender(RenderScheduler.OVERLAY);
+        });
+        this.setOnMouseReleased(event -> {
+            selectionAnchor = Double.NaN;
+            viewport.released();
+        });
 }
     /*
      * TODO: -For dev use, copy template [], allow copilot to check code if its
@@ -267,140 +313,430 @@ public class OHLCChart extends XYChart<LocalDateTime, Double> {
      */
     
     public void setSeries(ObservableList<OHLCData> ohlcDataList) {
-        this.ohlcDataList = ohlcDataList;
-
-        // Split the data into smaller chunks
-        int chunkSize = 500; // Adjust as needed
-        int totalChunks = (int) Math.ceil((double) ohlcDataList.size() / chunkSize);
-
-        CompletableFuture.runAsync(() -> {
-            for (int i = 0; i < totalChunks; i++) {
-                int start = i * chunkSize;
-                int end = Math.min(start + chunkSize, ohlcDataList.size());
-                ObservableList<OHLCData> chunk = FXCollections.observableArrayList(ohlcDataList.subList(start, end));
-
-                Series<LocalDateTime, Double> series = new Series<>();
-                chunk.forEach(data -> series.getData().add(toChartData(data)));
-                Platform.runLater(() -> {
-                    getData().add(series);
-                });
+        setSeries(BarSeries.of(ohlcDataList));
+    }
+
+    // The chart reads bars straight from the columnar series, no XYChart.Data is created per bar
+    public void setSeries(BarSource bars) {
+        this.bars = bars;
+        pyramid.close();
+        this.pyramid = new BarPyramid(bars);
+        if (resampler != null) {
+            resampler.close(); // Cached timeframes belong to the previous series
+        }
+        this.resampler = null;
+        this.timeframe = null;
+        this.candlesDirty = true;
+        requestChartLayout();
+    }
+
+    /**
+     * Shows the bars rolled up to the given timeframe, or the base series for {@code null}. Rolled-up series are
+     * cached by a {@link BarResampler} and kept current as live bars arrive, so switching back and forth is instant.
+     */
+    public void setTimeframe(Timeframe timeframe) {
+        if (resampler == null) {
+            resampler = new BarResampler(bars);
+        }
+        this.timeframe = timeframe;
+        BarSource shown = timeframe == null ? resampler.base : resampler.series(timeframe);
+        this.bars = shown;
+        pyramid.close();
+        this.pyramid = new BarPyramid(shown);
+        this.candlesDirty = true;
+        // The axes follow the most recent bars of the new series
+        xAxis.dataset = shown;
+        xAxis.scrollOffset = 0;
+        xAxis.MAX_TICK_COUNT = Math.max(1, Math.min(xAxis.MAX_TICK_COUNT, shown.size()));
+        xAxis.updateMarks();
+        int from = Math.max(0, shown.size() - xAxis.MAX_TICK_COUNT);
+        if (from < shown.size()) {
+            yAxis.setBounds(shown.minLow(from, shown.size()), shown.maxHigh(from, shown.size()));
+        }
+        scheduler.requestRender(RenderScheduler.CANDLES);
+    }
+
+    /**
+     * Puts older history in front of the bars shown, e.g. once it has loaded behind the most recent bars. The view
+     * stays on the same recent bars and live updates applied in the meantime are kept. A heap series is extended in
+     * place, its pyramid and cached timeframes rebuild from the version change. Memory-mapped bars are not copied
+     * onto the heap, the history and the bars go to a temporary mapped store and the original is left as is.
+     */
+    public void prependHistory(BarSeries older) {
+        BarSource current = feedTarget();
+        older.ensureSorted();
+        if (current instanceof BarSeries series) {
+            series.prependAll(older);
+            if (resampler != null) {
+                resampler.sync();
             }
-        });
+            candlesDirty = true;
+            xAxis.updateMarks();
+            scheduler.requestRender(RenderScheduler.AXES | RenderScheduler.CANDLES);
+            return;
+        }
+        BarSource merged = current.derived();
+        int end = current.isEmpty() ? older.size() : older.indexAtOrAfter(current.time(0));
+        for (int i = 0; i < end; i++) {
+            merged.append(older.time(i), older.open(i), older.high(i), older.low(i), older.close(i), older.volume(i));
+        }
+        merged.appendAll(current);
+        Timeframe shown = this.timeframe;
+        setSeries(merged);
+        MappedBarStore.release(current); // A store from an earlier prepend
+        xAxis.dataset = merged;
+        if (shown != null) {
+            setTimeframe(shown);
+        } else {
+            xAxis.updateMarks();
+            scheduler.requestRender(RenderScheduler.AXES | RenderScheduler.CANDLES);
+        }
+    }
 
+    // Spaces bars evenly so session gaps take no room, see DateTimeAxis#setOrdinal
+    public void setOrdinalAxis(boolean ordinal) {
+        xAxis.setOrdinal(ordinal);
+        candlesDirty = true;
+        scheduler.requestRender(RenderScheduler.AXES | RenderScheduler.CANDLES);
     }
 
-    private XYChart.Data<LocalDateTime, Double> toChartData(OHLCData ohlcData) {
-        return new XYChart.Data<>(ohlcData.getDateTime(), yAxis.getDisplayPosition(ohlcData.getClose()));
-    } 
+    public void setSessionCalendar(SessionCalendar sessions) {
+        xAxis.setSessionCalendar(sessions);
+        candlesDirty = true;
+        scheduler.requestRender(RenderScheduler.AXES | RenderScheduler.CANDLES);
+    }
+
+    public Timeframe getTimeframe() {
+        return this.timeframe;
+    }
+
+    // Series that live updates are written to, the base series when a rolled-up timeframe is shown
+    private BarSource feedTarget() {
+        return resampler != null ? resampler.base : bars;
+    }
 
     @Override
     protected void layoutPlotChildren() {
-        // Efficient rendering by skipping unnecessary operations
-        if (ohlcDataList == null || ohlcDataList.isEmpty() || this.canvas == null) {
+        // Layout passes only mark the candles dirty, the scheduler draws them once on the next pulse
+        scheduler.requestRender(RenderScheduler.CANDLES);
+    }
+
+    // Called by the scheduler at most once per pulse with everything marked dirty since the last pulse
+    private void renderFrame(int flags) {
+        if (this.canvas == null) {
             return;
         }
-        candlesticks.clear();
-        int chunkSize = Math.max(50, Math.min(ohlcDataList.size() / 10, 250));
-        Canvas canvas = this.canvas; // Assuming a canvas is available for drawing
-        GraphicsContext gc = this.canvas.getGraphicsContext2D();
-        CompletableFuture.supplyAsync(() -> {
-
-            int end = 0;
-            int start = 0;
-            List<List<OHLCData>> chunkedData = new ArrayList<>();
-            int totalChunks = (int) Math.ceil((double) ohlcDataList.size() / chunkSize);
-
-            for (int i = 0; i < totalChunks; i++) {
-                start = i * chunkSize;
-                end = Math.min(start + chunkSize, ohlcDataList.size());
-                List<OHLCData> chunk = ohlcDataList.subList(start, end);
-                chunkedData.add(chunk);
+        flags |= drainTicks();
+        flags |= drainUpdates();
+        if (bars != null && !bars.isEmpty()) {
+            if ((flags & RenderScheduler.AXES) != 0) {
+                applyPendingBounds();
             }
-            return chunkedData;
-        }).thenAccept(chunkedData -> {
-            Platform.runLater(() -> {
-
-                gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight()); // Clear previous drawings
-                chunkedData.forEach(chunk -> chunk.forEach(ohlcData ->{ 
-                    drawCandleStick(gc, ohlcData);
-                    
-                }));
-            });
-        }).exceptionally(ex -> {
-            ex.printStackTrace(); // Log any errors
-            return null;
-        });
+            if ((flags & RenderScheduler.VIEWPORT) != 0) {
+                flags |= viewport.step();
+            }
+            // During a pan or zoom the cached layer is moved instead, see ViewportController
+            if ((flags & (RenderScheduler.CANDLES | RenderScheduler.AXES)) != 0 && viewport.allowsRaster()) {
+                drawCandles();
+            }
+        }
+        overlay.repaint();
+    }
+
+    // Moves the axes to cover every update received since the last frame
+    private void applyPendingBounds() {
+        bars.ensureSorted();
+        LocalDateTime last = bars.dateTime(bars.size() - 1);
+        xAxis.range.upperBound = last;
+        xAxis.setBounds(xAxis.range.lowerBound, last);
+        xAxis.updateMarks();
+        if (pendingHigh > yAxis.range.upperBound || pendingLow < yAxis.range.lowerBound) {
+            yAxis.setBounds(Math.min(yAxis.range.lowerBound, pendingLow), Math.max(yAxis.range.upperBound, pendingHigh));
+            xAxis.updateMarks();
+        }
+        pendingLow = Double.MAX_VALUE;
+        pendingHigh = -Double.MAX_VALUE;
+    }
+
+    private void drawCandles() {
+        // The candle layer is cached, it is only redrawn when the data or the viewport changed
+        if (!candlesDirty && !viewportChanged()) {
+            if (formingDirty) {
+                redrawFormingCandle();
+            }
+            return;
+        }
+        Canvas canvas = this.canvas;
+        GraphicsContext gc = this.canvas.getGraphicsContext2D();
+        long frameStart = System.nanoTime();
+        activeCandle = -1;
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight()); // Clear previous drawings
+        // Only the bars inside the axis range are visited, a frame costs O(visible bars)
+        updateVisibleRange();
+        // Zoomed out past one pixel per bar, draw merged bars from the coarsest level that still fills the width
+        pyramid.sync();
+        renderLevel = pyramid.levelFor(visibleLast - visibleFirst + 1, canvas.getWidth());
+        BarSource level = pyramid.level(renderLevel);
+        renderedSeries = level;
+        // Collect pixel coordinates first, then draw everything in one pass per color
+        double candleWidth = calculateCandleWidth();
+        renderer.begin(candleWidth);
+        for (int i = visibleFirst >> renderLevel; i <= visibleLast >> renderLevel; i++) {
+            batchCandleStick(level, i, candleWidth);
+        }
+        renderer.render(gc);
+        rememberViewport();
+        lastFrameNanos = System.nanoTime() - frameStart;
+        drawlasttip();
+        if (candlesDrawnAction != null && renderer.size() > 0) {
+            Runnable action = candlesDrawnAction;
+            candlesDrawnAction = null;
+            action.run();
+        }
+    }
+
+    // Runs on the FX thread after the next frame that draws candles, e.g. to time the first frame
+    public void whenCandlesDrawn(Runnable action) {
+        this.candlesDrawnAction = action;
+        scheduler.requestRender(RenderScheduler.CANDLES);
+    }
+
+    // Repaints the column of the last candle only, the rest of the cached layer is left as it is
+    private void redrawFormingCandle() {
+        formingDirty = false;
+        int slot = renderer.size() - 1;
+        pyramid.sync();
+        int lastIndex = (bars.size() - 1) >> renderLevel;
+        if (slot < 0 || visibleLast != bars.size() - 1 || renderer.barIndex(slot) != lastIndex) {
+            return; // The forming bar is off screen
+        }
+        long frameStart = System.nanoTime();
+        GraphicsContext gc = this.canvas.getGraphicsContext2D();
+        double half = renderer.getCandleWidth() / 2 + renderer.lineWidth;
+        gc.clearRect(renderer.centerX(slot) - half, 0, half * 2, canvas.getHeight());
+        renderer.removeLast();
+        batchCandleStick(pyramid.level(renderLevel), lastIndex, renderer.getCandleWidth());
+        if (slot > 0 && renderer.centerX(slot - 1) + half > renderer.centerX(slot) - half) {
+            renderer.renderSlot(gc, slot - 1); // A wide neighbour reaches into the cleared column
+        }
+        if (renderer.size() == slot + 1) {
+            renderer.renderSlot(gc, slot);
+        }
+        lastFrameNanos = System.nanoTime() - frameStart;
         drawlasttip();
+    }
 
+    public void invalidateCandles() {
+        candlesDirty = true;
     }
-    public void drawlasttip() {
 
-        Platform.runLater(()->{
+    private boolean viewportChanged() {
+        return drawnLower != xAxis.getLowerMillis()
+                || drawnUpper != xAxis.getUpperMillis()
+                || drawnYLower != yAxis.range.lowerBound || drawnYUpper != yAxis.range.upperBound
+                || drawnWidth != canvas.getWidth() || drawnHeight != canvas.getHeight()
+                || drawnTickCount != xAxis.MAX_TICK_COUNT
+                || drawnSize != bars.size() || drawnVersion != bars.version();
+    }
+
+    private void rememberViewport() {
+        drawnLower = xAxis.getLowerMillis();
+        drawnUpper = xAxis.getUpperMillis();
+        drawnYLower = yAxis.range.lowerBound;
+        drawnYUpper = yAxis.range.upperBound;
+        drawnWidth = canvas.getWidth();
+        drawnHeight = canvas.getHeight();
+        drawnTickCount = xAxis.MAX_TICK_COUNT;
+        drawnSize = bars.size();
+        drawnVersion = bars.version();
+        candlesDirty = false;
+        formingDirty = false;
+        viewport.layerDrawn();
+    }
+
+    // Hides what is pinned to candle positions while the layer moves
+    void gestureStarted() {
+        activeCandle = -1;
+        overlay.clearTooltip();
+        overlay.clearLastPrice();
+        scheduler.requestRender(RenderScheduler.OVERLAY);
+    }
 
-            if (this.candlesticks.size() != ohlcDataList.size()) {
-                return;
+    // Fits the price axis to the bars a pan or zoom ended on, the layer is redrawn on this frame
+    void gestureSettled(boolean moved) {
+        int from = xAxis.windowStart();
+        int to = xAxis.windowEnd();
+        if (moved && from < to) {
+            // Merged bars keep the scan to about one bar per pixel however far out the view is zoomed
+            pyramid.sync();
+            int level = pyramid.levelFor(to - from, canvas.getWidth());
+            BarSource merged = pyramid.level(level);
+            int first = from >> level;
+            int last = Math.min(merged.size(), ((to - 1) >> level) + 1);
+            if (first < last) {
+                yAxis.setBounds(merged.minLow(first, last), merged.maxHigh(first, last));
             }
-            else{
-            int index = (this.candlesticks.size()-1);
-            CandleStick lastStick = this.candlesticks.get(index);
-            drawLastTooltip(this.canvas.getGraphicsContext2D(),Double.toString(lastStick.close),lastStick.x,lastStick.y,lastStick.color);
         }
+        candlesDirty = true;
+    }
+    // Finds the visible [first, last] bar indices by binary search over the sorted time column
+    private void updateVisibleRange() {
+        bars.ensureSorted();
+        visibleFirst = bars.indexAtOrAfter(xAxis.getLowerMillis());
+        visibleLast = bars.indexAfter(xAxis.getUpperMillis()) - 1;
+    }
 
-        });
+    // Moves the last price label on the overlay, the candle layer is left untouched
+    public void drawlasttip() {
 
+            if (renderer.size() == 0 || visibleLast != bars.size() - 1) {
+                overlay.clearLastPrice();
+            }
+            else{
+            int slot = renderer.size() - 1;
+            double close = renderedSeries.close(renderer.barIndex(slot));
+            if (close != lastPriceValue) { // The label string is only rebuilt when the price moved
+                lastPriceText.setLength(0);
+                TooltipFormatter.appendFixed(lastPriceText, close, 2);
+                lastPriceLabel = lastPriceText.toString();
+                lastPriceValue = close;
+            }
+            Color color = renderer.isBullish(slot) ? renderer.bullishColor : renderer.bearishColor;
+            overlay.setLastPrice(lastPriceLabel, renderer.centerX(slot) - renderer.getCandleWidth() / 2, renderer.bodyY(slot), color);
+        }
 
     }
 
     public Canvas getCanvas() {
         return this.canvas;
     }
-    public void updateData(OHLCData d){
-        if (d.symbol.toLowerCase().strip().equals(ohlcDataList.getFirst().symbol.toLowerCase().strip())){
-        
-        ohlcDataList.add(d);
-        getData().getFirst().getData().add(toChartData(d));
-        xAxis.range.upperBound = d.getDateTime();
-        xAxis.setBounds(xAxis.range.lowerBound, d.getDateTime());
-        xAxis.updateMarks();
-        //xAxis.tickMarks = xAxis.supplyTickValues(xAxis.getRange());
-        if(yAxis.range.upperBound < d.getClose()){
-            Platform.runLater(()->{
-                yAxis.setBounds(yAxis.range.lowerBound,d.getClose());
-                xAxis.updateMarks();
-            });
 
+    public ChartOverlay getOverlay() {
+        return this.overlay;
+    }
+
+    public RenderScheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    public void stopRendering() {
+        scheduler.stop();
+    }
+
+    public long getLastFrameNanos() {
+        return lastFrameNanos;
+    }
+    // Feeds the chart from raw ticks, the aggregated bars are pulled in at display rate rather than tick rate
+    public void setTickAggregator(TickAggregator aggregator) {
+        if (this.tickAggregator != null) {
+            this.tickAggregator.onUpdate = null;
         }
-        else if(yAxis.range.lowerBound > d.getClose()){
-            Platform.runLater(()->{
-                yAxis.setBounds(d.getClose(),yAxis.range.upperBound);
-                xAxis.updateMarks();
-            });
+        this.tickAggregator = aggregator;
+        if (aggregator != null) {
+            aggregator.onUpdate = () -> scheduler.requestRender(RenderScheduler.AXES | RenderScheduler.CANDLES);
+            scheduler.requestRender(RenderScheduler.AXES | RenderScheduler.CANDLES);
         }
-        //int lastIndex = getData().get(0).getData().size() - 1;
-        //getData().get(0).getData().set(lastIndex, toChartData(d));
-        layoutPlotChildren();
+    }
+
+    public TickAggregator getTickAggregator() {
+        return this.tickAggregator;
+    }
+
+    // Moves the bars aggregated since the last pulse into the series and returns the parts to render
+    private int drainTicks() {
+        if (tickAggregator == null || bars == null) {
+            return 0;
+        }
+        int before = bars.size();
+        if (!tickAggregator.drainTo(feedTarget())) {
+            return 0;
+        }
+        if (resampler != null) {
+            resampler.sync();
+        }
+        for (int i = Math.max(0, before - 1); i < bars.size(); i++) {
+            pendingLow = Math.min(pendingLow, bars.low(i));
+            pendingHigh = Math.max(pendingHigh, bars.high(i));
+        }
+        return barsChanged(bars.size() == before ? bars.size() - 1 : -1);
+    }
+
+    // Marks what an update touched, an amended last bar only repaints its own candle unless it leaves the y range
+    private int barsChanged(int amendedLast) {
+        boolean outOfRange = pendingHigh > yAxis.range.upperBound || pendingLow < yAxis.range.lowerBound;
+        if (amendedLast == bars.size() - 1 && !outOfRange) {
+            formingDirty = true;
+            return RenderScheduler.CANDLES;
+        }
+        candlesDirty = true;
+        return RenderScheduler.AXES | RenderScheduler.CANDLES;
+    }
+
+    public void updateData(OHLCData d){
+        // strip() returns the same string when there is nothing to strip, so matching symbols do not allocate
+        if (d.symbol.strip().equalsIgnoreCase(bars.getSymbol().strip())){
+        updateData(BarSeries.toEpochMillis(d.getDateTime()), d.getOpen(), d.getHigh(), d.getLow(), d.getClose(), d.getVolume());
     }
     else {
         System.out.println("\nBeing given data from ["+d.symbol.toLowerCase()+"]");
-        System.out.println("\nBut current data is of ["+ohlcDataList.getFirst().symbol.toLowerCase()+"]");
+        System.out.println("\nBut current data is of ["+bars.getSymbol().toLowerCase()+"]");
         System.out.println("\n\nSymbol mismatch.");
 
     }
 
     }
-    private void drawCandleStick(GraphicsContext gc, OHLCData ohlcData) {
-        if (xAxis.getCandlePos(ohlcData.getDateTime()) == 0.0) {
-            return;
+
+    // Safe from any thread, updates from other threads are queued and applied together on the next pulse
+    public void updateData(long epochMillis, double open, double high, double low, double close, double volume) {
+        if (Platform.isFxApplicationThread()) {
+            scheduler.requestRender(applyUpdate(epochMillis, open, high, low, close, volume));
+        } else {
+            updates.offer(epochMillis, open, high, low, close, volume);
+            scheduler.requestRender(RenderScheduler.CANDLES);
         }
-        // Retrieve values directly from OHLCData
-        if (ohlcData.getDateTime().isBefore(xAxis.range.lowerBound) || ohlcData.getDateTime().isAfter(xAxis.range.upperBound)) {
-            return;
+    }
+
+    // Applies one bar update and returns the parts of the chart it invalidated
+    private int applyUpdate(long epochMillis, double open, double high, double low, double close, double volume) {
+        // A bar with the time of the forming bar amends it, a late bar is inserted in time order
+        int before = bars.size();
+        int index = feedTarget().upsert(epochMillis, open, high, low, close, volume);
+        if (resampler != null) {
+            resampler.sync();
+            if (timeframe != null) {
+                // Only an update of the last bucket is a forming candle, amends and late bars can land in older ones
+                int bucket = bars.indexAtOrAfter(timeframe.bucketStart(feedTarget().time(index)));
+                index = bucket == bars.size() - 1 ? bucket : -1;
+            }
         }
-        double open = ohlcData.getOpen();
-        double close = ohlcData.getClose();
-        double high = ohlcData.getHigh();
-        double low = ohlcData.getLow();
-        LocalDateTime date = ohlcData.getDateTime();
+        pendingLow = Math.min(pendingLow, close);
+        pendingHigh = Math.max(pendingHigh, close);
+        // Axis bounds and candles are brought up to date once on the next pulse, however many updates arrive
+        return barsChanged(bars.size() == before ? index : -1);
+    }
+
+    // Applies the updates queued by other threads since the last pulse
+    private int drainUpdates() {
+        drainFlags = 0;
+        if (updates.drain(drainSink) > 0) {
+            lastUpdateLagNanos = updates.getLastWaitNanos();
+        }
+        return drainFlags;
+    }
+
+    // Time the oldest update applied in the last pulse spent queued before it was drawn
+    public long getLastUpdateLagNanos() {
+        return lastUpdateLagNanos;
+    }
+
+    private void batchCandleStick(BarSource series, int index, double candleWidth) {
+        // Retrieve values directly from the bar columns, off-screen bars were culled by updateVisibleRange.
+        // The x position is looked up once per candle and kept in the renderer slot for the rest of the layout
+        double x = xAxis.getCandleCenter(series, index, renderLevel);
+        double open = series.open(index);
+        double close = series.close(index);
+        double high = series.high(index);
+        double low = series.low(index);
 
         // Calculate the height of the candlestick body (difference between open and
         // close)
@@ -413,83 +749,15 @@ public class OHLCChart extends XYChart<LocalDateTime, Double> {
         double uWickY = yAxis.getCandlePos(high);
         double lWickY = yAxis.getCandlePos(low);
 
-        // Set the candle width and determine color (green for upward, red for downward)
-        double candleWidth = calculateCandleWidth();
-        Color candlestickColor = close >= open ? Color.GREEN : Color.RED;
-
-        // Set drawing parameters
-        gc.setFill(candlestickColor);
-        gc.setStroke(candlestickColor);
-        gc.setLineWidth(1);
-
-        // Draw the candle body (rectangular shape)
-        double bodyX = xAxis.getCandlePos(date) - candleWidth / 2;
-        gc.fillRect(bodyX, bY, candleWidth, cHeight);
-
-        // Draw the upper wick (line from high to the top of the body)
-        gc.strokeLine(xAxis.getCandlePos(date), uWickY,
-        xAxis.getCandlePos(date), bY);
-
-        // Draw the lower wick (line from low to the bottom of the body)
-        gc.strokeLine(xAxis.getCandlePos(date), lWickY,
-        xAxis.getCandlePos(date), bY + cHeight);
-
-        // Create a tooltip-like string
-        String tooltipText = String.format(
-                "DateTime: %s\nOpen: %.2f\nHigh: %.2f\nLow: %.2f\nClose: %.2f",
-                date, open, high, low, close);
-
-        // Define the area to check for mouse hover (the area of the candlestick)
-        double mouseAreaX = bodyX;
-        double mouseAreaY = bY;
-        double mouseAreaWidth = candleWidth;
-        double mouseAreaHeight = cHeight + (uWickY - lWickY);
-        candlesticks.add(new CandleStick(mouseAreaX, mouseAreaY, mouseAreaWidth, mouseAreaHeight,tooltipText,close, candlestickColor));
-
-        // Add mouse event listeners to show the tooltip
-        
+        // Determine color (green for upward, red for downward) and queue the candle, the renderer sets state once per color.
+        // The renderer arrays double as the hover hit boxes, no object is created per candle
+        renderer.add(index, x, bY, cHeight, uWickY, lWickY, close >= open);
     }
 
     private void clearTooltip() {
-        Platform.runLater(() -> {
-            GraphicsContext gc = this.canvas.getGraphicsContext2D();
-            //gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight()); // Clear everything
-            layoutPlotChildren(); // Redraw the candlestick chart
-        });
-    }
-
-    // Helper method to draw a tooltip on the canvas
-    private void drawTooltip(GraphicsContext gc, String text, double x, double y) {
-
-
-
-        gc.setFill(Color.color(0, 0, 0, 0.8));
-        gc.fillRect(x + 10, y + 10, 150, 70); // Draw the background for the tooltip
-        gc.setFill(Color.WHITE);
-        gc.fillText(text, x + 15, y + 25); // Draw the tooltip text
-        
-
-        
-    }
-
-
-
-
-    private void drawLastTooltip(GraphicsContext gc, String text, double x, double y,Color color) {
-
-        Platform.runLater(() -> {
-        
-
-
-
-                //gc.setFill(Color.color(0, 0, 0, 0.0));
-                //gc.fillRect(x -5, y + 5, 100, 70); // Draw the background for the tooltip
-                gc.setFill(Color.rgb((int)(color.getRed()*255), (int)(color.getGreen()*255), (int)(color.getBlue()*255)));
-                
-                gc.fillText(text, x - 8, y + 8); // Draw the tooltip text
-
-    });
-        
+        // Only the overlay is cleared, the candle layer does not need a redraw
+        overlay.clearTooltip();
+        scheduler.requestRender(RenderScheduler.OVERLAY);
     }
 
     // Method to get the current chart data
@@ -498,19 +766,16 @@ public class OHLCChart extends XYChart<LocalDateTime, Double> {
     }
 
     private LocalDateTime[] getDataMinMax() {
-        LocalDateTime minDate = LocalDateTime.MAX;
-        LocalDateTime maxDate = LocalDateTime.MIN;
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
     
         // Find the min and max dates
-        for (OHLCData ohlcData : ohlcDataList) {
-            LocalDateTime date = ohlcData.getDateTime();
-            if (date.isBefore(minDate)) {
-                minDate = date;
-            }
-            if (date.isAfter(maxDate)) {
-                maxDate = date;
-            }
+        for (int i = 0; i < bars.size(); i++) {
+            minTime = Math.min(minTime, bars.time(i));
+            maxTime = Math.max(maxTime, bars.time(i));
         }
+        LocalDateTime minDate = BarSeries.toDateTime(minTime);
+        LocalDateTime maxDate = BarSeries.toDateTime(maxTime);
     
 
              // Define a fixed padding duration (e.g., 10 minutes)
@@ -523,20 +788,8 @@ public class OHLCChart extends XYChart<LocalDateTime, Double> {
     }
 
     public Double[] getDataMinMaxy() {
-        Double minval = Double.MAX_VALUE;
-        Double maxval = Double.MIN_VALUE;
-        for (XYChart.Series<LocalDateTime, Double> series : getData()) {
-            for (XYChart.Data<LocalDateTime, Double> y : series.getData()) {
-                if (y.getYValue() < minval) {
-                    minval = y.getYValue();
-                }
-
-                if (y.getYValue() > maxval) {
-                    maxval = y.getYValue();
-                }
-            }
-
-        }
+        double minval = bars.minLow(0, bars.size());
+        double maxval = bars.maxHigh(0, bars.size());
                 // Add padding (2% of the range) to avoid clipping
                 double range = maxval - minval;
                 double padding = range * 0.02; // 2% padding
@@ -553,7 +806,7 @@ public class OHLCChart extends XYChart<LocalDateTime, Double> {
         }
     
         double axisLength = xAxis.getWidth();
-        double numDataPoints = xAxis.MAX_TICK_COUNT;
+        double numDataPoints = Math.max(1, xAxis.MAX_TICK_COUNT >> renderLevel);
     
         // Calculate the width dynamically based on the axis length and number of data points
         double calculatedWidth = axisLength / (numDataPoints * 1.5); // Adjust factor as needed
@@ -604,29 +857,6 @@ public class OHLCChart extends XYChart<LocalDateTime, Double> {
     protected void seriesRemoved(Series<LocalDateTime, Double> series) {
         // Update the plot to reflect the removed series
         layoutPlotChildren();
-    }
-    public class CandleStick {
-        public double x=0.0;
-        public double y=0.0;
-        public double width=0.0;
-        public double height=0.0;
-        public String tooltip="";
-        public double close=0.0;
-        public Color color;
-        public CandleStick(double x, double y, double width, double height,String tooltip, double close,Color color) {
-            this.x = x;
-            this.y = y;
-            this.width = width;
-            this.height = height;
-            this.tooltip = tooltip;
-            this.close = close;
-            this.color = color;
-        }
-    
-    
-    
-    
     }
 
 }
-
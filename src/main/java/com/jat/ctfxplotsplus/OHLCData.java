@@ -16,7 +16,7 @@ public class OHLCData implements Serializable {
     private double close;
     private double volume;
     public String symbol;
-    private final XYChart.Data<LocalDateTime, Number> data;
+    private transient XYChart.Data<LocalDateTime, Number> data; // created on first use, charts read bars from BarSeries
 
     public OHLCData(LocalDateTime timestamp, double open, double high, double low, double close, double volume) {
         this.timestamp = timestamp;
@@ -25,7 +25,6 @@ public class OHLCData implements Serializable {
         this.low = low;
         this.close = close;
         this.volume = volume;
-        this.data = new XYChart.Data<>(timestamp, getMid()); // y value is the midpoint
     }
 
     // getters for open, high, low, close, volume, data
@@ -53,6 +52,9 @@ public class OHLCData implements Serializable {
     }
 
     public XYChart.Data<LocalDateTime, Number> getData() {
+        if (data == null) {
+            data = new XYChart.Data<>(timestamp, getMid()); // y value is the midpoint
+        }
         return data;
     }
 
@@ -0,0 +1,304 @@
+package com.jat.ctfxplotsplus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A streaming, byte-level parser for the {@code OHLCData{timestamp=..., open=..., ...}} text format written by
+ * {@link OHLCData#toString()}.
+ *
+ * <p>Lines are parsed straight from a byte array into a {@link BarSeries}: the fixed-layout timestamp is turned
+ * into epoch milliseconds with integer arithmetic and decimals are read as a scaled integer, so a line costs no
+ * allocation at all. Field values are located by their {@code '='} sign in the fixed field order timestamp, open,
+ * high, low, close, volume.</p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * BarSeries bars = OHLCTextParser.parse(Path.of("history.txt"));
+ * BarSeries bundled = OHLCTextParser.parse(getClass().getResourceAsStream("/com/jat/ctfxplotsplus/data.txt"));
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class OHLCTextParser {
+    private static final int BLOCK_SIZE = 1 << 20;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18};
+
+    private OHLCTextParser() {
+    }
+
+    public static BarSeries parse(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return parse(in);
+        }
+    }
+
+    public static BarSeries parse(InputStream in) throws IOException {
+        BarSeries bars = new BarSeries();
+        parse(in, bars);
+        return bars;
+    }
+
+    // Streams the input in blocks, a line split across two blocks is moved to the front of the buffer
+    public static void parse(InputStream in, BarSeries into) throws IOException {
+        byte[] block = new byte[BLOCK_SIZE];
+        int filled = 0;
+        int read;
+        while ((read = in.read(block, filled, block.length - filled)) != -1) {
+            filled += read;
+            int consumed = parseLines(block, 0, filled, false, into);
+            if (consumed == 0 && filled == block.length) {
+                // A single line longer than the buffer, grow it
+                block = Arrays.copyOf(block, block.length * 2);
+                continue;
+            }
+            System.arraycopy(block, consumed, block, 0, filled - consumed);
+            filled -= consumed;
+        }
+        parseLines(block, 0, filled, true, into);
+    }
+
+    // Streams any byte buffer, e.g. a memory-mapped file region, through a reusable block
+    public static void parse(ByteBuffer source, BarSeries into) throws IOException {
+        byte[] block = new byte[BLOCK_SIZE];
+        int filled = 0;
+        while (source.hasRemaining()) {
+            int read = Math.min(block.length - filled, source.remaining());
+            source.get(block, filled, read);
+            filled += read;
+            int consumed = parseLines(block, 0, filled, false, into);
+            if (consumed == 0 && filled == block.length) {
+                // A single line longer than the buffer, grow it
+                block = Arrays.copyOf(block, block.length * 2);
+                continue;
+            }
+            System.arraycopy(block, consumed, block, 0, filled - consumed);
+            filled -= consumed;
+        }
+        parseLines(block, 0, filled, true, into);
+    }
+
+    // Index where the last n lines of the buffer start, so the most recent bars of a file can be parsed first
+    public static int tailStart(ByteBuffer source, int lines) {
+        int pos = source.limit();
+        // A trailing line break ends the last line rather than starting an empty one
+        while (pos > 0 && (source.get(pos - 1) == '\n' || source.get(pos - 1) == '\r')) {
+            pos--;
+        }
+        int found = 0;
+        while (pos > 0) {
+            if (source.get(pos - 1) == '\n' && ++found == lines) {
+                return pos;
+            }
+            pos--;
+        }
+        return 0;
+    }
+
+    // Offset where the last n lines of a file start, read backwards from its end so files of any size work
+    public static long tailStart(FileChannel channel, int lines) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(1 << 16);
+        long pos = channel.size();
+        boolean trailing = true; // A trailing line break ends the last line rather than starting an empty one
+        int found = 0;
+        while (pos > 0) {
+            int length = (int) Math.min(block.capacity(), pos);
+            long start = pos - length;
+            block.clear().limit(length);
+            while (block.hasRemaining()) {
+                if (channel.read(block, start + block.position()) < 0) {
+                    throw new IOException("History file shrank while reading its tail");
+                }
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                byte b = block.get(i);
+                if (trailing && (b == '\n' || b == '\r')) {
+                    continue;
+                }
+                trailing = false;
+                if (b == '\n' && ++found == lines) {
+                    return start + i + 1;
+                }
+            }
+            pos = start;
+        }
+        return 0;
+    }
+
+    /**
+     * Parses every complete line of {@code buffer} between {@code from} and {@code to} into {@code into}.
+     *
+     * @param atEnd whether a trailing line without a newline is complete
+     * @return the index after the last parsed line, the start of an incomplete trailing line
+     */
+    public static int parseLines(byte[] buffer, int from, int to, boolean atEnd, BarSeries into) throws IOException {
+        // Only the last line can be incomplete, so lines are parsed in one pass up to the last newline
+        int limit = to;
+        if (!atEnd) {
+            while (limit > from && buffer[limit - 1] != '\n') {
+                limit--;
+            }
+        }
+        int pos = from;
+        while (pos < limit) {
+            pos = parseLine(buffer, pos, limit, into);
+        }
+        return limit;
+    }
+
+    // Parses the line starting at pos and returns the start of the next line
+    private static int parseLine(byte[] buffer, int pos, int end, BarSeries into) throws IOException {
+        // Skip blank lines and carriage returns
+        while (pos < end && buffer[pos] <= ' ') {
+            pos++;
+        }
+        if (pos == end) {
+            return end;
+        }
+        pos = valueStart(buffer, pos, end);
+        long time = parseTimestamp(buffer, pos, end);
+        pos = valueStart(buffer, pos, end);
+        double open = parseDecimal(buffer, pos, end);
+        pos = valueStart(buffer, pos, end);
+        double high = parseDecimal(buffer, pos, end);
+        pos = valueStart(buffer, pos, end);
+        double low = parseDecimal(buffer, pos, end);
+        pos = valueStart(buffer, pos, end);
+        double close = parseDecimal(buffer, pos, end);
+        pos = valueStart(buffer, pos, end);
+        double volume = parseDecimal(buffer, pos, end);
+        into.append(time, open, high, low, close, volume);
+        while (pos < end && buffer[pos] != '\n') {
+            pos++;
+        }
+        return pos + 1;
+    }
+
+    // Position right after the next '=' sign
+    private static int valueStart(byte[] buffer, int pos, int end) throws IOException {
+        while (pos < end && buffer[pos] != '=' && buffer[pos] != '\n') {
+            pos++;
+        }
+        if (pos == end || buffer[pos] == '\n') {
+            throw malformed(buffer, pos, end);
+        }
+        return pos + 1;
+    }
+
+    // yyyy-MM-ddTHH:mm with optional :ss, read as UTC epoch milliseconds
+    private static long parseTimestamp(byte[] buffer, int pos, int end) throws IOException {
+        if (pos + 16 > end || buffer[pos + 4] != '-' || buffer[pos + 7] != '-' || buffer[pos + 10] != 'T'
+                || buffer[pos + 13] != ':') {
+            throw malformed(buffer, pos, end);
+        }
+        int year = digits(buffer, pos, 4);
+        int month = digits(buffer, pos + 5, 2);
+        int day = digits(buffer, pos + 8, 2);
+        int hour = digits(buffer, pos + 11, 2);
+        int minute = digits(buffer, pos + 14, 2);
+        int second = 0;
+        if (pos + 19 <= end && buffer[pos + 16] == ':') {
+            second = digits(buffer, pos + 17, 2);
+        }
+        return ((daysFromCivil(year, month, day) * 24 + hour) * 60 + minute) * 60_000L + second * 1_000L;
+    }
+
+    private static int digits(byte[] buffer, int pos, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            value = value * 10 + (buffer[pos + i] - '0');
+        }
+        return value;
+    }
+
+    // Days since 1970-01-01 in the proleptic Gregorian calendar
+    static long daysFromCivil(long year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+
+    // Reads [-]digits[.digits] as a scaled integer, exponents and very long numbers fall back to Double.parseDouble
+    private static double parseDecimal(byte[] buffer, int pos, int end) throws IOException {
+        int start = pos;
+        boolean negative = false;
+        if (pos < end && buffer[pos] == '-') {
+            negative = true;
+            pos++;
+        }
+        long mantissa = 0;
+        int digitCount = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; pos < end; pos++) {
+            byte b = buffer[pos];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digitCount++;
+                if (fraction) {
+                    scale++;
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else if (b == ',' || b == '}' || b <= ' ') {
+                break;
+            } else {
+                return slowDecimal(buffer, start, end);
+            }
+        }
+        if (digitCount == 0) {
+            throw malformed(buffer, start, end);
+        }
+        if (digitCount > 15) {
+            return slowDecimal(buffer, start, end);
+        }
+        // Both operands are exact doubles, so the division is correctly rounded like Double.parseDouble
+        double value = mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private static double slowDecimal(byte[] buffer, int start, int end) throws IOException {
+        int stop = start;
+        while (stop < end && buffer[stop] != ',' && buffer[stop] != '}' && buffer[stop] != '\n') {
+            stop++;
+        }
+        try {
+            return Double.parseDouble(text(buffer, start, stop).trim());
+        } catch (NumberFormatException e) {
+            throw malformed(buffer, start, end);
+        }
+    }
+
+    private static IOException malformed(byte[] buffer, int pos, int end) {
+        int from = Math.min(pos, end);
+        while (from > 0 && buffer[from - 1] != '\n') {
+            from--;
+        }
+        int to = Math.min(pos, end);
+        while (to < end && buffer[to] != '\n') {
+            to++;
+        }
+        return new IOException("Malformed OHLCData line: " + text(buffer, from, to).trim());
+    }
+
+    private static String text(byte[] buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer[from + i];
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,241 @@
+package com.jat.ctfxplotsplus;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads large history files in the OHLCData text format in parallel.
+ *
+ * <p>The file is memory-mapped and split on line boundaries into chunks, at least one per core and at most
+ * {@value #MAX_CHUNK_BYTES} bytes each. Every chunk is parsed by {@link OHLCTextParser} into its own {@link BarSeries}
+ * in a {@link ForkJoinPool}, then the chunks are merged by time into a single series. When the chunks already follow
+ * each other in time, which is the case for any sorted file, the merge is a plain concatenation.</p>
+ *
+ * <p>A {@link LoadProgress} callback receives every chunk as soon as it is parsed, so a chart can paint the most
+ * recent chunk before the whole file is done. Callbacks run on pool threads. The older part of a file whose tail
+ * is shown first is split the same way with {@link #loadChunks(FileChannel, long, long, LoadProgress)}, text
+ * already in memory with {@link #loadChunks(ByteBuffer, LoadProgress)}. {@link PlotHandler} reads history files with this loader and puts the merged older part of a
+ * progressive load in front of the chart at once.</p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * ParallelHistoryLoader loader = new ParallelHistoryLoader();
+ * loader.loadAsync(Path.of("history.txt"), (chunk, index, count, bytesDone, totalBytes) -> {
+ *     System.out.println(bytesDone * 100 / totalBytes + "%");
+ * }).thenAccept(bars -> Platform.runLater(() -> chart.setSeries(bars)));
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class ParallelHistoryLoader {
+    public static final long MAX_CHUNK_BYTES = 256L << 20;
+
+    private final ForkJoinPool pool;
+
+    @FunctionalInterface
+    public interface LoadProgress {
+        void chunkLoaded(BarSeries chunk, int chunkIndex, int chunkCount, long bytesDone, long totalBytes);
+    }
+
+    public ParallelHistoryLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ParallelHistoryLoader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public CompletableFuture<BarSeries> loadAsync(Path path, LoadProgress progress) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return load(path, progress);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, pool);
+    }
+
+    public BarSeries load(Path path) throws IOException {
+        return load(path, null);
+    }
+
+    public BarSeries load(Path path, LoadProgress progress) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return merge(loadChunks(channel, 0, channel.size(), progress));
+        }
+    }
+
+    /**
+     * Parses the text of a file between two offsets in parallel chunks split on line boundaries and returns them in
+     * text order, unmerged. Every chunk is mapped on its own, so the range can be larger than a single mapping.
+     */
+    public BarSeries[] loadChunks(FileChannel channel, long from, long to, LoadProgress progress) throws IOException {
+        long size = to - from;
+        long[] bounds = splitOnLines(channel, from, to);
+        int chunkCount = bounds.length - 1;
+        AtomicLong bytesDone = new AtomicLong();
+
+        List<ForkJoinTask<BarSeries>> tasks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            int index = i;
+            long start = bounds[i];
+            long end = bounds[i + 1];
+            tasks.add(pool.submit(() -> {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                BarSeries chunk = new BarSeries();
+                OHLCTextParser.parse(region, chunk);
+                chunk.ensureSorted();
+                long done = bytesDone.addAndGet(end - start);
+                if (progress != null) {
+                    progress.chunkLoaded(chunk, index, chunkCount, done, size);
+                }
+                return chunk;
+            }));
+        }
+        return joinAll(tasks, "history file");
+    }
+
+    /**
+     * Parses text already in memory in parallel chunks split on line boundaries and returns them in text order,
+     * unmerged. Chunks are handed to the callback as they finish.
+     */
+    public BarSeries[] loadChunks(ByteBuffer text, LoadProgress progress) throws IOException {
+        int base = text.position();
+        int size = text.remaining();
+        int chunkCount = chunkCount(size);
+        int[] bounds = new int[chunkCount + 1];
+        bounds[chunkCount] = size;
+        for (int i = 1; i < chunkCount; i++) {
+            int pos = Math.max(bounds[i - 1], (int) ((long) size * i / chunkCount));
+            while (pos < size && text.get(base + pos) != '\n') {
+                pos++;
+            }
+            bounds[i] = Math.min(size, pos + 1);
+        }
+        AtomicLong bytesDone = new AtomicLong();
+        List<ForkJoinTask<BarSeries>> tasks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            int index = i;
+            int start = bounds[i];
+            int end = bounds[i + 1];
+            tasks.add(pool.submit(() -> {
+                BarSeries chunk = new BarSeries();
+                OHLCTextParser.parse(text.slice(base + start, end - start), chunk);
+                chunk.ensureSorted();
+                long done = bytesDone.addAndGet(end - start);
+                if (progress != null) {
+                    progress.chunkLoaded(chunk, index, chunkCount, done, size);
+                }
+                return chunk;
+            }));
+        }
+        return joinAll(tasks, "history text");
+    }
+
+    private static BarSeries[] joinAll(List<ForkJoinTask<BarSeries>> tasks, String source) throws IOException {
+        BarSeries[] chunks = new BarSeries[tasks.size()];
+        for (int i = 0; i < chunks.length; i++) {
+            try {
+                chunks[i] = tasks.get(i).join();
+            } catch (RuntimeException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                throw cause instanceof IOException io ? io : new IOException("Failed to load " + source, cause);
+            }
+        }
+        return chunks;
+    }
+
+    private int chunkCount(long size) {
+        if (size < 1 << 20) {
+            return 1; // Not worth splitting
+        }
+        return (int) Math.max(pool.getParallelism(), (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+    }
+
+    // Chunk boundaries: every boundary but the first and last sits right after a newline
+    private long[] splitOnLines(FileChannel channel, long from, long to) throws IOException {
+        long size = to - from;
+        int chunkCount = chunkCount(size);
+        long[] bounds = new long[chunkCount + 1];
+        bounds[0] = from;
+        bounds[chunkCount] = to;
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (int i = 1; i < chunkCount; i++) {
+            long pos = Math.max(bounds[i - 1], from + size * i / chunkCount);
+            bounds[i] = nextLineStart(channel, probe, pos, to);
+        }
+        return bounds;
+    }
+
+    private long nextLineStart(FileChannel channel, ByteBuffer probe, long pos, long size) throws IOException {
+        while (pos < size) {
+            probe.clear();
+            int read = channel.read(probe, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    // Merges sorted chunks by time, a concatenation when the chunks do not overlap
+    static BarSeries merge(BarSeries[] chunks) {
+        BarSeries merged = new BarSeries();
+        boolean ordered = true;
+        long previousLast = Long.MIN_VALUE;
+        for (BarSeries chunk : chunks) {
+            if (chunk.isEmpty()) {
+                continue;
+            }
+            if (chunk.time(0) < previousLast) {
+                ordered = false;
+                break;
+            }
+            previousLast = chunk.time(chunk.size() - 1);
+        }
+        if (ordered) {
+            for (BarSeries chunk : chunks) {
+                merged.appendAll(chunk);
+            }
+            return merged;
+        }
+
+        // k-way merge, k is the chunk count so a linear scan of the heads is enough
+        int[] heads = new int[chunks.length];
+        while (true) {
+            int best = -1;
+            for (int c = 0; c < chunks.length; c++) {
+                if (heads[c] < chunks[c].size()
+                        && (best == -1 || chunks[c].time(heads[c]) < chunks[best].time(heads[best]))) {
+                    best = c;
+                }
+            }
+            if (best == -1) {
+                return merged;
+            }
+            BarSeries chunk = chunks[best];
+            int i = heads[best]++;
+            merged.append(chunk.time(i), chunk.open(i), chunk.high(i), chunk.low(i), chunk.close(i), chunk.volume(i));
+        }
+    }
+}
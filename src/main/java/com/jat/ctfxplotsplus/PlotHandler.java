@@ -1,19 +1,23 @@
 package com.jat.ctfxplotsplus;
 
 
-import javafx.collections.FXCollections;
+import javafx.application.Platform;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.layout.AnchorPane;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 
 
@@ -36,35 +40,39 @@ import java.util.List;
  * <pre>
  * {@code
  * PlotHandler plotHandler = new PlotHandler();
- * ObservableList<OHLCData> ohlcDataList = FXCollections.observableArrayList();
- * // From compatible data source, add each to the datalist as an OHLCData object with timestamp, open, high, low, close, and volume values
+ * BarSeries bars = new BarSeries("AAPL");
+ * // From compatible data source, append each bar with its timestamp, open, high, low, close, and volume values
  * for(Data data : dataList) {
- *      LocalDateTime timestamp = data.getTimestamp();
- *      double open = data.getOpen();
- *      double high = data.getHigh();
- *      double low = data.getLow();
- *      double close = data.getClose();
- *      double volume = data.getVolume();
- *      OHLCData ohlcData = new OHLCData(timestamp, open, high, low, close, volume);
- *      ohlcDataList.add(ohlcData);
+ *      long time = BarSeries.toEpochMillis(data.getTimestamp());
+ *      bars.append(time, data.getOpen(), data.getHigh(), data.getLow(), data.getClose(), data.getVolume());
  *      }
  * ScrollPane scrollPane = new ScrollPane();
  * AnchorPane chartPane = new AnchorPane();
- * plotHandler.showOHLCChart(scrollPane, chartPane, true, 50, ohlcDataList);
+ * plotHandler.showOHLCChart(scrollPane, chartPane, true, bars);
  * }
  * </pre>
  * </p>
  * 
  * <p>Methods:
  * <ul>
- * <li>{@link #getMinMaxDates(List)} - Returns the minimum and maximum date values from the dataset.</li>
- * <li>{@link #getMinMaxVals(List)} - Returns the minimum and maximum price values with padding.</li>
+ * <li>{@link #getMinMaxDates(BarSource)} - Returns the minimum and maximum date values from the dataset.</li>
+ * <li>{@link #getMinMaxVals(BarSource)} - Returns the minimum and maximum price values of the most recent bars.</li>
  * <li>{@link #updateAxesRanges()} - Updates the axis range of the OHLC chart.</li>
- * <li>{@link #showOHLCChart(ScrollPane, AnchorPane, boolean, int, ObservableList)} - Initializes and displays the OHLC chart.</li>
+ * <li>{@link #readData()} - Reads the bundled sample data into a bar series.</li>
+ * <li>{@link #readData(Path)} - Reads a history file in the OHLCData text format with a {@link ParallelHistoryLoader}.</li>
+ * <li>{@link #readDataAsync(Path)} - Reads a history file on a virtual thread of the chart's {@link IngestionScope}.</li>
+ * <li>{@link #readSnapshot(Path)} - Reads a binary history file written by {@link BarSnapshot}.</li>
+ * <li>{@link #writeSnapshot(BarSeries, Path)} - Writes a bar series as a binary {@link BarSnapshot}.</li>
+ * <li>{@link #openStore(Path, String)} - Opens the memory-mapped {@link MappedBarStore} of a symbol.</li>
+ * <li>{@link #showOHLCChart(ScrollPane, AnchorPane, boolean, BarSource)} - Initializes and displays the OHLC chart.</li>
+ * <li>{@link #showOHLCChartProgressive(ScrollPane, AnchorPane, boolean, Path, int)} - Shows an empty chart at once, then the most recent bars, then the older history behind them.</li>
+ * <li>{@link #startReplay(BarSource, double)} - Replays a history into the displayed chart at N times real speed.</li>
  * <li>{@link #displayChart(AnchorPane)} - Ensures the chart is added to the pane if not already present.</li>
  * <li>{@link #setResizable(boolean)} - Enables or disables resizable behavior for the ScrollPane.</li>
  * <li>{@link #setParent(ScrollPane)} - Sets the parent ScrollPane that contains the chart.</li>
  * <li>{@link #getOHLCChart()} - Returns the current OHLCChart instance.</li>
+ * <li>{@link #getScope()} - Returns the scope running the chart's loads and feed connections.</li>
+ * <li>{@link #close()} - Cancels the chart's loads and feeds and stops its rendering.</li>
  * </ul>
  * </p>
  * 
@@ -73,7 +81,9 @@ import java.util.List;
  * <li>{@link OHLCChart} - The chart that is being managed by this handler.</li>
  * <li>{@link DateTimeAxis} - The X-axis representing time.</li>
  * <li>{@link CurrencyAxis} - The Y-axis representing price.</li>
- * <li>{@link OHLCData} - The data model containing OHLC values.</li>
+ * <li>{@link BarSeries} - The columnar store containing OHLC values.</li>
+ * <li>{@link MappedBarStore} - The memory-mapped store for histories too large for the heap.</li>
+ * <li>{@link OHLCData} - The single bar data model, accepted for compatibility.</li>
  * </ul>
  * </p>
  * 
@@ -81,12 +91,16 @@ import java.util.List;
  * @param pane The AnchorPane to display the chart.
  * @param resizable Whether the chart should resize dynamically.
  * @param pageSize The number of data points displayed at a time.
- * @param ohlcDataList The OHLC data set used to populate the chart.
+ * @param bars The OHLC bars used to populate the chart.
  */
 
  
 public class PlotHandler {
+    public static final int RANGE_SCAN_LIMIT = 1 << 20; // Bars scanned for the initial price range
+    private static final AtomicInteger handlers = new AtomicInteger();
     private OHLCChart chart;
+    private final ParallelHistoryLoader loader = new ParallelHistoryLoader();
+    private final IngestionScope scope = new IngestionScope("chart-" + handlers.incrementAndGet());
 
     @FXML
     private ScrollPane parent;
@@ -94,37 +108,27 @@ public class PlotHandler {
     public PlotHandler() {
     }
 
-    private LocalDateTime[] getMinMaxDates(List<OHLCData> ohlcDataList) {
-        LocalDateTime minDate = LocalDateTime.MAX;
-        LocalDateTime maxDate = LocalDateTime.MIN;
-
-        for (OHLCData ohlcData : ohlcDataList) {
-            LocalDateTime date = ohlcData.getDateTime();
-            if (date.isBefore(minDate)) {
-                minDate = date;
-            }
-            if (date.isAfter(maxDate)) {
-                maxDate = date;
-            }
+    private LocalDateTime[] getMinMaxDates(BarSource bars) {
+        if (bars.isEmpty()) {
+            LocalDateTime now = LocalDateTime.now(); // Placeholder until bars arrive
+            return new LocalDateTime[] { now, now };
         }
+        // Bars are in chronological order, the first and last bar bound the dates
+        bars.ensureSorted();
+        long minTime = bars.time(0);
+        long maxTime = bars.time(bars.size() - 1);
          // Define a fixed padding duration (e.g., 10 minutes)
     long fixedPaddingMinutes = 300;  // You can change this to whatever duration you need
-        return new LocalDateTime[] { minDate, maxDate };
+        return new LocalDateTime[] { BarSeries.toDateTime(minTime), BarSeries.toDateTime(maxTime) };
     }
-private Double[] getMinMaxVals(List<OHLCData> ohlcdatalist) {
-    double minVal = Double.MAX_VALUE;
-    double maxVal = Double.MIN_VALUE;
-
-    for (OHLCData ohlcData : ohlcdatalist) {
-        double lval = ohlcData.getLow();
-        double hval = ohlcData.getHigh();
-        if (lval < minVal) {
-            minVal = lval;
-        }
-        if (hval > maxVal) {
-            maxVal = hval;
-        }
+private Double[] getMinMaxVals(BarSource bars) {
+    if (bars.isEmpty()) {
+        return new Double[] {0.0, 1.0}; // Placeholder until bars arrive
     }
+    // Only the most recent bars are scanned so opening a huge mapped store stays instant
+    int from = Math.max(0, bars.size() - RANGE_SCAN_LIMIT);
+    double minVal = bars.minLow(from, bars.size());
+    double maxVal = bars.maxHigh(from, bars.size());
 
     // Add padding (2% of the range) to avoid clipping
     double range = maxVal - minVal;
@@ -137,48 +141,70 @@ private Double[] getMinMaxVals(List<OHLCData> ohlcdatalist) {
     chart.updateAxisRange();
     }
 
-    public ObservableList<OHLCData> readData() {
-        ObservableList<OHLCData> ohlcData = FXCollections.observableArrayList();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
-    
-        try (InputStream is = getClass().getResourceAsStream("/com/jat/ctfxplotsplus/data.txt");
-            InputStreamReader isr = new InputStreamReader(is);
-            BufferedReader reader = new BufferedReader(isr)) {
-    
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.replace("OHLCData{", "").replace("}", "").trim();
-                String[] parts = line.split(", ");
-    
-                String timestampStr = parts[0].substring(parts[0].indexOf('=') + 1).trim();
-                LocalDateTime timestamp = LocalDateTime.parse(timestampStr, formatter);
-    
-                double open = Double.parseDouble(parts[1].substring(parts[1].indexOf('=') + 1));
-                double high = Double.parseDouble(parts[2].substring(parts[2].indexOf('=') + 1));
-                double low = Double.parseDouble(parts[3].substring(parts[3].indexOf('=') + 1));
-                double close = Double.parseDouble(parts[4].substring(parts[4].indexOf('=') + 1));
-                double volume = Double.parseDouble(parts[5].substring(parts[5].indexOf('=') + 1));
-    
-                OHLCData ohlc = new OHLCData(timestamp, open, high, low, close, volume);
-                ohlcData.add(ohlc);
-            }
-
+    // Reads the bundled sample data
+    public BarSeries readData() {
+        try (InputStream is = getClass().getResourceAsStream("/com/jat/ctfxplotsplus/data.txt")) {
+            return OHLCTextParser.parse(is);
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return ohlcData;
+        return new BarSeries();
+    }
+
+    // Reads any history file in the OHLCData text format, large files are parsed in parallel chunks
+    public BarSeries readData(Path path) throws IOException {
+        return loader.load(path);
+    }
+
+    // Loads on a virtual thread, many charts load at once and close() cancels a load still running
+    public CompletableFuture<BarSeries> readDataAsync(Path path) {
+        return scope.fork(() -> readData(path));
+    }
+
+    public CompletableFuture<BarSeries> readDataAsync() {
+        return scope.fork(this::readData);
+    }
+
+    public BarSeries readData(InputStream in) throws IOException {
+        return OHLCTextParser.parse(in);
+    }
+
+    // Binary snapshots load far faster and are much smaller than the text format
+    public BarSeries readSnapshot(Path path) throws IOException {
+        return BarSnapshot.read(path);
+    }
+
+    public void writeSnapshot(BarSeries bars, Path path) throws IOException {
+        BarSnapshot.write(bars, path);
+    }
+
+    // Histories larger than the heap stay on disk, the chart reads them through the page cache
+    public MappedBarStore openStore(Path path, String symbol) throws IOException {
+        return MappedBarStore.open(path, symbol);
+    }
+
+    // Load-tests the live path of the displayed chart, see ReplayEngine
+    public ReplayEngine startReplay(BarSource history, double speed) {
+        ReplayEngine replay = ReplayEngine.forChart(history, chart, speed);
+        replay.start();
+        return replay;
     }
 
     public void showOHLCChart(ScrollPane parent, AnchorPane pane, boolean resizable,
         ObservableList<OHLCData> ohlcDataList) throws IOException {
-        LocalDateTime[] dates = getMinMaxDates(ohlcDataList);
-        Double[] vals = getMinMaxVals(ohlcDataList);
-        DateTimeAxis xAxis = new DateTimeAxis(dates[0], dates[1],ohlcDataList);
+        showOHLCChart(parent, pane, resizable, BarSeries.of(ohlcDataList));
+    }
+
+    public void showOHLCChart(ScrollPane parent, AnchorPane pane, boolean resizable,
+        BarSource bars) throws IOException {
+        LocalDateTime[] dates = getMinMaxDates(bars);
+        Double[] vals = getMinMaxVals(bars);
+        DateTimeAxis xAxis = new DateTimeAxis(dates[0], dates[1],bars);
         CurrencyAxis yAxis = new CurrencyAxis(vals[0], vals[1],chart);
 
-        this.chart = new OHLCChart(xAxis, yAxis, ohlcDataList,pane);
+        this.chart = new OHLCChart(xAxis, yAxis, bars,pane);
 
-        chart.setSeries(ohlcDataList);
+        chart.setSeries(bars);
         System.out.println("Chart series set");
 
         displayChart(pane);
@@ -193,6 +219,118 @@ private Double[] getMinMaxVals(List<OHLCData> ohlcdatalist) {
         System.out.println("Resizable set.");
     }
 
+    /**
+     * Puts an empty chart in the pane straight away, fills it with the most recent {@code recentBars} of a history
+     * file once they are parsed, then parses the older history on a virtual thread and puts it in front without
+     * blocking interaction. Call on the FX thread. Returns straight away, the future completes once the whole
+     * history is shown, or with a {@link CancellationException} when the handler is closed first. Time to the recent
+     * bars, the first frame with candles and the whole history is logged.
+     */
+    public CompletableFuture<OHLCChart> showOHLCChartProgressive(ScrollPane parent, AnchorPane pane, boolean resizable,
+                                                                 Path path, int recentBars) {
+        return showOHLCChartProgressive(parent, pane, resizable, recentBars, recent -> {
+            // The file is never mapped as a whole, so histories past 2 GB work: the tail is found by reading back
+            // from the end and the older part is mapped chunk by chunk
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long split = OHLCTextParser.tailStart(channel, recentBars);
+                BarSeries tail = new BarSeries();
+                OHLCTextParser.parse(channel.map(FileChannel.MapMode.READ_ONLY, split, channel.size() - split), tail);
+                recent.accept(tail);
+                return loader.loadChunks(channel, 0, split, null);
+            }
+        });
+    }
+
+    // Puts the loaded older history in front, the first bars of an empty chart also set its price range
+    private void prependLoaded(OHLCChart target, BarSeries older) {
+        if (older.isEmpty()) {
+            return;
+        }
+        boolean wasEmpty = target.bars.isEmpty();
+        target.prependHistory(older);
+        if (wasEmpty) {
+            Double[] vals = getMinMaxVals(older);
+            target.yAxis.setBounds(vals[0], vals[1]);
+        }
+    }
+
+    // The bundled sample data
+    public CompletableFuture<OHLCChart> showOHLCChartProgressive(ScrollPane parent, AnchorPane pane, boolean resizable,
+                                                                 int recentBars) {
+        return showOHLCChartProgressive(parent, pane, resizable, recentBars, recent -> {
+            ByteBuffer text;
+            try (InputStream is = getClass().getResourceAsStream("/com/jat/ctfxplotsplus/data.txt")) {
+                text = ByteBuffer.wrap(is.readAllBytes());
+            }
+            int split = OHLCTextParser.tailStart(text, recentBars);
+            BarSeries tail = new BarSeries();
+            OHLCTextParser.parse(text.slice(split, text.limit() - split), tail);
+            recent.accept(tail);
+            return loader.loadChunks(text.slice(0, split), null);
+        });
+    }
+
+    // History text read in two steps, the most recent bars are handed over first, the older part is returned in chunks
+    @FunctionalInterface
+    private interface ProgressiveSource {
+        BarSeries[] load(Consumer<BarSeries> recent) throws IOException;
+    }
+
+    private CompletableFuture<OHLCChart> showOHLCChartProgressive(ScrollPane parent, AnchorPane pane,
+                                                                  boolean resizable, int recentBars,
+                                                                  ProgressiveSource source) {
+        long start = System.nanoTime();
+        CompletableFuture<OHLCChart> shown = new CompletableFuture<>();
+        OHLCChart created;
+        try {
+            showOHLCChart(parent, pane, resizable, new BarSeries());
+            created = this.chart; // Later calls replace the field, this load keeps filling its own chart
+        } catch (IOException e) {
+            shown.completeExceptionally(e);
+            return shown;
+        }
+        scope.fork(() -> {
+            Consumer<BarSeries> showRecent = recent -> {
+                recent.ensureSorted();
+                double recentMillis = (System.nanoTime() - start) / 1e6;
+                Platform.runLater(() -> {
+                    if (scope.isClosed()) {
+                        shown.completeExceptionally(new CancellationException(scope.name + " closed"));
+                        return;
+                    }
+                    if (recent.isEmpty()) {
+                        return;
+                    }
+                    Double[] vals = getMinMaxVals(recent);
+                    created.prependHistory(recent);
+                    created.yAxis.setBounds(vals[0], vals[1]);
+                    System.out.printf("Startup: %d recent bars loaded in %.1f ms%n", recent.size(), recentMillis);
+                    created.whenCandlesDrawn(() -> System.out.printf("Startup: first frame with candles at %.1f ms%n",
+                            (System.nanoTime() - start) / 1e6));
+                });
+            };
+
+            // Older history is parsed in parallel chunks and merged off the FX thread while the recent bars are
+            // already on screen, then put in front once so the chart copies and rebuilds its bars only once
+            BarSeries older = ParallelHistoryLoader.merge(source.load(showRecent));
+            Platform.runLater(() -> {
+                if (scope.isClosed()) {
+                    shown.completeExceptionally(new CancellationException(scope.name + " closed"));
+                    return;
+                }
+                prependLoaded(created, older);
+                System.out.printf("Startup: full history of %d bars loaded in %.1f ms%n", created.bars.size(),
+                        (System.nanoTime() - start) / 1e6);
+                shown.complete(created);
+            });
+            return null;
+        }).exceptionally(error -> {
+            shown.completeExceptionally(error);
+            return null;
+        });
+        return shown;
+    }
+
     public void displayChart(AnchorPane pane) {
         if (!pane.getChildren().contains(chart)) {
             pane.getChildren().add(chart);
@@ -214,4 +352,16 @@ private Double[] getMinMaxVals(List<OHLCData> ohlcdatalist) {
     public OHLCChart getOHLCChart() {
         return this.chart;
     }
+
+    public IngestionScope getScope() {
+        return this.scope;
+    }
+
+    // Called when the chart closes, nothing started for it keeps running
+    public void close() {
+        scope.close();
+        if (chart != null) {
+            chart.stopRendering();
+        }
+    }
 }
\ No newline at end of file
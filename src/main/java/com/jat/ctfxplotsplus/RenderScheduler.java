@@ -0,0 +1,102 @@
+package com.jat.ctfxplotsplus;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * An {@link AnimationTimer} driven scheduler that coalesces render requests into at most one render per pulse.
+ *
+ * <p>Data updates, axis changes and hover events only mark the chart dirty with {@link #requestRender(int)}, which
+ * is safe to call from any thread and never touches the FX queue. On the next pulse the accumulated dirty flags are
+ * handed to the render callback once. If the previous render overran the frame budget, one pulse is skipped so the
+ * FX thread can catch up; the pending flags are kept and rendered on the following pulse.</p>
+ *
+ * <p>Counters:
+ * <ul>
+ * <li>{@link #getRequests()} - Render requests received.</li>
+ * <li>{@link #getRenders()} - Renders actually performed.</li>
+ * <li>{@link #getCoalesced()} - Requests merged into an already pending render.</li>
+ * <li>{@link #getDropped()} - Pulses skipped because the previous render overran the frame budget.</li>
+ * <li>{@link #getBusyNanos()} - Total FX thread time spent rendering.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * RenderScheduler scheduler = new RenderScheduler(flags -> renderFrame(flags));
+ * scheduler.start();
+ * scheduler.requestRender(RenderScheduler.CANDLES);
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class RenderScheduler extends AnimationTimer {
+    public static final int CANDLES = 1;
+    public static final int AXES = 1 << 1;
+    public static final int OVERLAY = 1 << 2;
+    public static final int VIEWPORT = 1 << 3; // A pan or zoom gesture is in progress
+
+    public long frameBudgetNanos = 16_666_667L; // One 60 Hz pulse
+
+    private final IntConsumer renderCallback;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private long renders = 0;
+    private long dropped = 0;
+    private long lastRenderNanos = 0;
+    private long busyNanos = 0; // Total time spent rendering
+    private boolean skippedLastPulse = false;
+
+    public RenderScheduler(IntConsumer renderCallback) {
+        this.renderCallback = renderCallback;
+    }
+
+    // Marks the given parts dirty, callable from any thread
+    public void requestRender(int flags) {
+        requests.incrementAndGet();
+        int previous;
+        do {
+            previous = pending.get();
+        } while (!pending.compareAndSet(previous, previous | flags));
+        if (previous != 0) {
+            coalesced.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void handle(long now) {
+        if (pending.get() == 0) {
+            return;
+        }
+        if (lastRenderNanos > frameBudgetNanos && !skippedLastPulse) {
+            dropped++;
+            skippedLastPulse = true;
+            return;
+        }
+        skippedLastPulse = false;
+        render(pending.getAndSet(0));
+    }
+
+    private void render(int flags) {
+        long start = System.nanoTime();
+        renderCallback.accept(flags);
+        lastRenderNanos = System.nanoTime() - start;
+        busyNanos += lastRenderNanos;
+        renders++;
+    }
+
+    public boolean isDirty() {return pending.get() != 0;}
+    public long getRequests() {return requests.get();}
+    public long getCoalesced() {return coalesced.get();}
+    public long getRenders() {return renders;}
+    public long getDropped() {return dropped;}
+    public long getLastRenderNanos() {return lastRenderNanos;}
+    public long getBusyNanos() {return busyNanos;}
+}
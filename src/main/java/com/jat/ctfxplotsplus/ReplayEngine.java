@@ -0,0 +1,165 @@
+package com.jat.ctfxplotsplus;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a bar or tick history into a live chart at N times real speed, to load-test the live update path.
+ *
+ * <p>A background thread walks the history and hands each bar to a {@link BarQueue.Sink}, by default
+ * {@link OHLCChart#updateData(long, double, double, double, double, double)}, paced by the bar timestamps divided
+ * by {@link #speed}. With {@link #MAX_SPEED} bars are pushed as fast as the thread can go, which finds the
+ * throughput limit of the live path. A tick history (price in the close column, size in the volume column) can be
+ * replayed through a {@link TickAggregator} instead.</p>
+ *
+ * <p>Every {@link #reportIntervalMillis} a report is printed with:
+ * <ul>
+ * <li>Update rate - Bars pushed per second by the replay thread.</li>
+ * <li>FX render busy - Share of wall time the FX thread spent in chart renders.</li>
+ * <li>FX queue latency - How long a runnable posted to the FX thread waited to run, high when it is saturated.</li>
+ * <li>Render lag - How long the oldest update of the last frame waited before it was drawn.</li>
+ * <li>Renders and dropped pulses of the chart's {@link RenderScheduler}.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * BarSeries history = plotHandler.readData();
+ * ReplayEngine replay = ReplayEngine.forChart(history, chart, 100);
+ * replay.start().thenRun(() -> System.out.println("Replay finished"));
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class ReplayEngine {
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    public long reportIntervalMillis = 1000;
+    public final double speed;
+
+    private final BarSource history;
+    private final BarQueue.Sink sink;
+    private final OHLCChart chart;
+    private final AtomicLong pushed = new AtomicLong();
+    private volatile boolean running = false;
+    private CompletableFuture<Void> completion;
+
+    // Previous FX thread samples, only touched by the report probes on the FX thread
+    private long lastProbeNanos;
+    private long lastBusyNanos;
+    private long lastRenders;
+    private long lastDropped;
+
+    public ReplayEngine(BarSource history, BarQueue.Sink sink, OHLCChart chart, double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Replay speed must be positive, got " + speed);
+        }
+        this.history = history;
+        this.sink = sink;
+        this.chart = chart;
+        this.speed = speed;
+    }
+
+    // Replays bars straight into the chart's live update path
+    public static ReplayEngine forChart(BarSource history, OHLCChart chart, double speed) {
+        return new ReplayEngine(history, chart::updateData, chart, speed);
+    }
+
+    // Replays ticks, close as price and volume as size, through an aggregator feeding the chart
+    public static ReplayEngine forTicks(BarSource ticks, TickAggregator aggregator, OHLCChart chart, double speed) {
+        return new ReplayEngine(ticks, (t, o, h, l, c, v) -> aggregator.onTick(t, c, v), chart, speed);
+    }
+
+    public synchronized CompletableFuture<Void> start() {
+        if (running) {
+            return completion;
+        }
+        running = true;
+        pushed.set(0);
+        completion = new CompletableFuture<>();
+        Thread thread = new Thread(this::run, "ctfx-replay");
+        thread.setDaemon(true);
+        thread.start();
+        return completion;
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    public boolean isRunning() {return running;}
+    public long getPushed() {return pushed.get();}
+
+    private void run() {
+        try {
+            history.ensureSorted();
+            int size = history.size();
+            long start = System.nanoTime();
+            long firstTime = size > 0 ? history.time(0) : 0;
+            long reportEvery = reportIntervalMillis * 1_000_000L;
+            long nextReport = start + reportEvery;
+            long reportedCount = 0;
+            long reportedAt = start;
+            if (chart != null) {
+                probe(0); // Baseline for the first report
+            }
+            for (int i = 0; i < size && running; i++) {
+                if (speed != MAX_SPEED) {
+                    long due = start + (long) ((history.time(i) - firstTime) * 1_000_000.0 / speed);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                sink.accept(history.time(i), history.open(i), history.high(i), history.low(i), history.close(i),
+                        history.volume(i));
+                long count = pushed.incrementAndGet();
+                long now = System.nanoTime();
+                if (now >= nextReport) {
+                    probe((count - reportedCount) * 1e9 / (now - reportedAt));
+                    reportedCount = count;
+                    reportedAt = now;
+                    nextReport = now + reportEvery;
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Replay of %s finished: %d updates in %.2f s, %.0f updates/s%n", history.getSymbol(),
+                    pushed.get(), seconds, pushed.get() / Math.max(seconds, 1e-9));
+            completion.complete(null);
+        } catch (RuntimeException e) {
+            completion.completeExceptionally(e);
+        } finally {
+            running = false;
+        }
+    }
+
+    // Posts a probe to the FX thread, the delay until it runs is the FX queue latency
+    private void probe(double updatesPerSecond) {
+        if (chart == null) {
+            System.out.printf("Replay: %.0f updates/s%n", updatesPerSecond);
+            return;
+        }
+        long posted = System.nanoTime();
+        Platform.runLater(() -> {
+            long now = System.nanoTime();
+            RenderScheduler scheduler = chart.getScheduler();
+            if (lastProbeNanos != 0) {
+                double busy = (scheduler.getBusyNanos() - lastBusyNanos) * 100.0 / (now - lastProbeNanos);
+                System.out.printf("Replay: %.0f updates/s, FX render busy %.1f%%, FX queue latency %.2f ms, "
+                                + "render lag %.2f ms, %d renders, %d dropped%n",
+                        updatesPerSecond, busy, (now - posted) / 1e6, chart.getLastUpdateLagNanos() / 1e6,
+                        scheduler.getRenders() - lastRenders, scheduler.getDropped() - lastDropped);
+            }
+            lastProbeNanos = now;
+            lastBusyNanos = scheduler.getBusyNanos();
+            lastRenders = scheduler.getRenders();
+            lastDropped = scheduler.getDropped();
+        });
+    }
+}
@@ -0,0 +1,97 @@
+package com.jat.ctfxplotsplus;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The trading sessions of a market: when a session opens, which days trade and which are holidays.
+ *
+ * <p>A session opens at a fixed offset from UTC midnight of its trading day. A negative offset opens it the evening
+ * before, e.g. FX sessions open at 22:00 UTC on the previous day and a Sunday evening open belongs to Monday. The
+ * {@link DateTimeAxis} uses the calendar to put day and longer ticks on session opens, to label them with the
+ * session's trading day and to skip days without a session. Offsets are fixed; daylight saving shifts of a local
+ * exchange time are not followed.</p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * SessionCalendar globex = new SessionCalendar(Duration.ofHours(-1), SessionCalendar.WEEKDAYS)
+ *         .withHolidays(LocalDate.of(2025, 12, 25));
+ * chart.setSessionCalendar(globex);
+ * Timeframe sessionDays = globex.daily(); // roll bars up into trading sessions
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public final class SessionCalendar {
+    private static final long DAY = 86_400_000L;
+
+    public static final Set<DayOfWeek> WEEKDAYS = EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY);
+    public static final SessionCalendar UTC = new SessionCalendar(Duration.ZERO, EnumSet.allOf(DayOfWeek.class));
+    public static final SessionCalendar UTC_WEEKDAYS = new SessionCalendar(Duration.ZERO, WEEKDAYS);
+    public static final SessionCalendar FX = new SessionCalendar(Duration.ofHours(-2), WEEKDAYS);
+
+    public final long sessionStartMillis; // Offset of the open from UTC midnight of the trading day
+    private final boolean[] tradingDays = new boolean[7]; // Monday first
+    private final long[] holidays; // Sorted epoch days
+
+    public SessionCalendar(Duration sessionStart, Set<DayOfWeek> tradingDays) {
+        this(sessionStart.toMillis(), tradingDays, new long[0]);
+    }
+
+    private SessionCalendar(long sessionStartMillis, Set<DayOfWeek> tradingDays, long[] holidays) {
+        if (Math.abs(sessionStartMillis) >= DAY) {
+            throw new IllegalArgumentException("Session start must be within a day of midnight, got "
+                    + sessionStartMillis + " ms");
+        }
+        this.sessionStartMillis = sessionStartMillis;
+        for (DayOfWeek day : tradingDays) {
+            this.tradingDays[day.getValue() - 1] = true;
+        }
+        this.holidays = holidays;
+    }
+
+    public SessionCalendar withHolidays(LocalDate... dates) {
+        long[] merged = Arrays.copyOf(holidays, holidays.length + dates.length);
+        for (int i = 0; i < dates.length; i++) {
+            merged[holidays.length + i] = dates[i].toEpochDay();
+        }
+        Arrays.sort(merged);
+        EnumSet<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if (tradingDays[day.getValue() - 1]) {
+                days.add(day);
+            }
+        }
+        return new SessionCalendar(sessionStartMillis, days, merged);
+    }
+
+    // Epoch day of the trading day a time belongs to
+    public long sessionDay(long epochMillis) {
+        return Math.floorDiv(epochMillis - sessionStartMillis, DAY);
+    }
+
+    public long sessionOpen(long sessionDay) {
+        return sessionDay * DAY + sessionStartMillis;
+    }
+
+    public boolean isTradingDay(long epochDay) {
+        int dayOfWeek = Math.floorMod(epochDay + 3, 7); // 1970-01-01 was a Thursday, Monday is 0
+        return tradingDays[dayOfWeek] && Arrays.binarySearch(holidays, epochDay) < 0;
+    }
+
+    public boolean isTradingTime(long epochMillis) {
+        return isTradingDay(sessionDay(epochMillis));
+    }
+
+    // Daily bars that start at the session open
+    public Timeframe daily() {
+        return Timeframe.D1.withSessionStart(Duration.ofMillis(sessionStartMillis));
+    }
+}
@@ -0,0 +1,174 @@
+package com.jat.ctfxplotsplus;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Turns a stream of raw trades or quotes into OHLC bars of a fixed interval.
+ *
+ * <p>Each tick updates the forming bar in place; a tick past the forming bar's interval closes it and opens the
+ * next one. Bar starts are aligned to multiples of the interval since the epoch (UTC). Closed bars are kept in
+ * primitive arrays until the chart drains them, so a tick never allocates, and the chart pulls everything that
+ * happened since the last pulse with {@link #drainTo(BarSource)} once per frame instead of redrawing per tick.</p>
+ *
+ * <p>Ticks are accepted from any thread. Ticks older than the forming bar are counted by
+ * {@link #getLateTicks()} and dropped.</p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * TickAggregator ticks = new TickAggregator(Duration.ofMinutes(1));
+ * chart.setTickAggregator(ticks);
+ * // On the feed thread
+ * ticks.onTick(epochMillis, price, size);
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class TickAggregator {
+    public final long intervalMillis;
+    public Runnable onUpdate; // Called after every tick, e.g. to schedule a render
+
+    // Closed bars not yet drained, a drain swaps them with the spare buffer and upserts them outside the lock
+    private static final class Buffer {
+        long[] times = new long[16];
+        double[] opens = new double[16];
+        double[] highs = new double[16];
+        double[] lows = new double[16];
+        double[] closes = new double[16];
+        double[] volumes = new double[16];
+        int count = 0;
+
+        void add(long time, double open, double high, double low, double close, double volume) {
+            if (count == times.length) {
+                int capacity = times.length * 2;
+                times = Arrays.copyOf(times, capacity);
+                opens = Arrays.copyOf(opens, capacity);
+                highs = Arrays.copyOf(highs, capacity);
+                lows = Arrays.copyOf(lows, capacity);
+                closes = Arrays.copyOf(closes, capacity);
+                volumes = Arrays.copyOf(volumes, capacity);
+            }
+            times[count] = time;
+            opens[count] = open;
+            highs[count] = high;
+            lows[count] = low;
+            closes[count] = close;
+            volumes[count] = volume;
+            count++;
+        }
+    }
+
+    private Buffer closed = new Buffer();
+    private Buffer spare = new Buffer();
+
+    // The forming bar
+    private boolean forming = false;
+    private boolean formingChanged = false;
+    private long formingStart;
+    private double formingOpen;
+    private double formingHigh;
+    private double formingLow;
+    private double formingClose;
+    private double formingVolume;
+
+    private long ticks = 0;
+    private long lateTicks = 0;
+
+    public TickAggregator(Duration interval) {
+        this(interval.toMillis());
+    }
+
+    public TickAggregator(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Bar interval must be positive, got " + intervalMillis + " ms");
+        }
+        this.intervalMillis = intervalMillis;
+    }
+
+    public void onTick(long epochMillis, double price, double size) {
+        long start = Math.floorDiv(epochMillis, intervalMillis) * intervalMillis;
+        synchronized (this) {
+            ticks++;
+            if (forming && start < formingStart) {
+                lateTicks++;
+                return;
+            }
+            if (forming && start > formingStart) {
+                closeFormingBar();
+            }
+            if (!forming) {
+                forming = true;
+                formingStart = start;
+                formingOpen = price;
+                formingHigh = price;
+                formingLow = price;
+                formingVolume = 0;
+            }
+            formingHigh = Math.max(formingHigh, price);
+            formingLow = Math.min(formingLow, price);
+            formingClose = price;
+            formingVolume += size;
+            formingChanged = true;
+        }
+        Runnable listener = onUpdate;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    private void closeFormingBar() {
+        closed.add(formingStart, formingOpen, formingHigh, formingLow, formingClose, formingVolume);
+        forming = false;
+    }
+
+    /**
+     * Moves every bar closed since the last drain into {@code into} and writes the forming bar to its tail.
+     *
+     * <p>Bars go through {@link BarSource#upsert(long, double, double, double, double, double)}, so the forming bar drained on
+     * an earlier frame is amended rather than appended twice.</p>
+     *
+     * <p>Only taking the pending bars holds the lock, the writes into {@code into} run outside it so the feed thread
+     * keeps ticking meanwhile. Drain from one thread only.</p>
+     *
+     * @return whether {@code into} changed
+     */
+    public boolean drainTo(BarSource into) {
+        Buffer drained;
+        boolean formingDrained;
+        long start;
+        double open, high, low, close, volume;
+        synchronized (this) {
+            drained = closed;
+            closed = spare;
+            spare = drained;
+            formingDrained = forming && formingChanged;
+            start = formingStart;
+            open = formingOpen;
+            high = formingHigh;
+            low = formingLow;
+            close = formingClose;
+            volume = formingVolume;
+            formingChanged = false;
+        }
+        boolean changed = drained.count > 0 || formingDrained;
+        try {
+            for (int i = 0; i < drained.count; i++) {
+                into.upsert(drained.times[i], drained.opens[i], drained.highs[i], drained.lows[i], drained.closes[i],
+                        drained.volumes[i]);
+            }
+        } finally {
+            drained.count = 0; // Reused as the closed buffer by the next drain, which swaps under the lock
+        }
+        if (formingDrained) {
+            into.upsert(start, open, high, low, close, volume);
+        }
+        return changed;
+    }
+
+    public synchronized long getTicks() {return ticks;}
+    public synchronized long getLateTicks() {return lateTicks;}
+    public synchronized boolean hasFormingBar() {return forming;}
+}
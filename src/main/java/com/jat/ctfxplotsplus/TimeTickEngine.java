@@ -0,0 +1,218 @@
+package com.jat.ctfxplotsplus;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * Picks calendar-aligned time ticks for an axis and formats their labels, reusing everything between layouts.
+ *
+ * <p>The step is the smallest "nice" one on the ladder 1s, 5s, 15s, 30s, 1m, 5m, 15m, 30m, 1h, 2h, 4h, 6h, 12h,
+ * 1d, 2d, 1w, 1M, 3M, 6M, 1y, 2y, 5y, 10y... that keeps labels at least the requested number of pixels apart.
+ * Ticks fall on round clock times in UTC: minutes and hours on the clock, days on midnight, weeks on Monday,
+ * months on the first of the month, or on the session open of those days when a session offset is set. Clock
+ * labels gain the date once the range spans more than a day, and day labels gain the year once it crosses one. Tick
+ * times are written into a reused array, and the {@link LocalDateTime} and label of a tick are cached by time and
+ * granularity, so panning and zooming over ticks seen before allocates nothing.</p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * TimeTickEngine ticks = new TimeTickEngine();
+ * ticks.compute(lowerMillis, upperMillis, axisWidth, 80);
+ * for (int i = 0; i < ticks.count; i++) {
+ *     draw(ticks.ticks[i], ticks.label(ticks.ticks[i]));
+ * }
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class TimeTickEngine {
+    public static final int SECONDS = 0; // Label granularities
+    public static final int MINUTES = 1;
+    public static final int DATED_MINUTES = 2; // Clock ticks of a range longer than a day carry their date
+    public static final int DAYS = 3;
+    public static final int DATED_DAYS = 4; // Day ticks of a range crossing a year carry their year
+    public static final int MONTHS = 5;
+    public static final int YEARS = 6;
+
+    private static final long SECOND = 1000L;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    private static final long WEEK = 7 * DAY;
+    private static final long MONDAY = 4 * DAY; // 1970-01-01 was a Thursday
+    private static final long AVERAGE_MONTH = 2_629_746_000L;
+    private static final long[] STEPS = {SECOND, 5 * SECOND, 15 * SECOND, 30 * SECOND, MINUTE, 5 * MINUTE,
+            15 * MINUTE, 30 * MINUTE, HOUR, 2 * HOUR, 4 * HOUR, 6 * HOUR, 12 * HOUR, DAY, 2 * DAY, WEEK};
+    private static final int[] MONTH_STEPS = {1, 3, 6, 12, 24, 60, 120, 240, 600, 1200};
+    private static final DateTimeFormatter[] FORMATS = {DateTimeFormatter.ofPattern("HH:mm:ss"),
+            DateTimeFormatter.ofPattern("HH:mm"), DateTimeFormatter.ofPattern("MM-dd HH:mm"),
+            DateTimeFormatter.ofPattern("MM-dd"), DateTimeFormatter.ofPattern("yyyy-MM-dd"),
+            DateTimeFormatter.ofPattern("yyyy-MM"), DateTimeFormatter.ofPattern("yyyy")};
+    private static final int CACHE_SIZE = 1024; // A power of two
+
+    public long[] ticks = new long[64];
+    public int count = 0;
+    public int granularity = MINUTES;
+    public long stepMillis = MINUTE; // Fixed steps, 0 for calendar month steps
+    public int stepMonths = 0;
+    public int generation = 0; // Bumped whenever the ticks are recomputed
+    private long sessionOffsetMillis = 0; // Day and longer ticks fall on session opens this far from midnight
+
+    // Inputs of the last compute, an unchanged axis reuses its ticks
+    private long lastLower = Long.MIN_VALUE;
+    private long lastUpper = Long.MIN_VALUE;
+    private double lastLength = -1;
+    private double lastSpacing = -1;
+
+    // Direct-mapped caches, a collision just overwrites the older entry
+    private final long[] labelKeys = new long[CACHE_SIZE];
+    private final String[] labels = new String[CACHE_SIZE];
+    private final long[] timeKeys = new long[CACHE_SIZE];
+    private final LocalDateTime[] times = new LocalDateTime[CACHE_SIZE];
+
+    // Fills ticks with the aligned tick times inside [lower, upper] and returns the tick count
+    public int compute(long lower, long upper, double length, double minSpacing) {
+        if (lower == lastLower && upper == lastUpper && length == lastLength && minSpacing == lastSpacing) {
+            return count;
+        }
+        lastLower = lower;
+        lastUpper = upper;
+        lastLength = length;
+        lastSpacing = minSpacing;
+        generation++;
+        count = 0;
+        if (upper < lower || length <= 0) {
+            return 0;
+        }
+        long maxTicks = Math.max(1, (long) (length / Math.max(1, minSpacing)));
+        long range = Math.max(1, upper - lower);
+        for (long step : STEPS) {
+            if (range / step < maxTicks) {
+                fixedTicks(lower, upper, step);
+                return count;
+            }
+        }
+        for (int months : MONTH_STEPS) {
+            if (range / (months * AVERAGE_MONTH) < maxTicks || months == MONTH_STEPS[MONTH_STEPS.length - 1]) {
+                monthTicks(lower, upper, months);
+                return count;
+            }
+        }
+        return count;
+    }
+
+    private void fixedTicks(long lower, long upper, long step) {
+        stepMillis = step;
+        stepMonths = 0;
+        if (step < MINUTE) {
+            granularity = SECONDS;
+        } else if (step < DAY) {
+            granularity = upper - lower > DAY ? DATED_MINUTES : MINUTES;
+        } else {
+            granularity = year(lower) != year(upper) ? DATED_DAYS : DAYS;
+        }
+        long offset = step < DAY ? 0 : step == WEEK ? MONDAY + sessionOffsetMillis : sessionOffsetMillis;
+        // First aligned time at or after the lower bound
+        long tick = Math.floorDiv(lower - offset + step - 1, step) * step + offset;
+        for (; tick <= upper; tick += step) {
+            add(tick);
+        }
+    }
+
+    private void monthTicks(long lower, long upper, int months) {
+        stepMillis = 0;
+        stepMonths = months;
+        granularity = months < 12 ? MONTHS : YEARS;
+        // Months since year 0 of the lower bound, rounded up to a multiple of the step
+        long day = Math.floorDiv(lower - sessionOffsetMillis, DAY);
+        long month = monthIndex(day);
+        if (firstOfMonth(month) * DAY + sessionOffsetMillis < lower) {
+            month++;
+        }
+        month = Math.floorDiv(month + months - 1, months) * months;
+        for (long tick = firstOfMonth(month) * DAY + sessionOffsetMillis; tick <= upper;
+             tick = firstOfMonth(month) * DAY + sessionOffsetMillis) {
+            add(tick);
+            month += months;
+        }
+    }
+
+    private void add(long tick) {
+        if (count == ticks.length) {
+            ticks = Arrays.copyOf(ticks, count * 2);
+        }
+        ticks[count++] = tick;
+    }
+
+    // Month index, year * 12 + month - 1, of the month holding an epoch day
+    private static long monthIndex(long epochDay) {
+        // Civil date from days, after Howard Hinnant's days_from_civil inverse
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + month - 1;
+    }
+
+    // Year of the trading day a time belongs to
+    private long year(long epochMillis) {
+        return Math.floorDiv(monthIndex(Math.floorDiv(epochMillis - sessionOffsetMillis, DAY)), 12);
+    }
+
+    // Epoch day of the first day of a month index
+    private static long firstOfMonth(long monthIndex) {
+        long year = Math.floorDiv(monthIndex, 12);
+        long month = monthIndex - year * 12 + 1;
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yoe = year - era * 400;
+        long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    // Sessions opening before midnight put their day ticks on the evening before, see SessionCalendar
+    public void setSessionOffset(long sessionOffsetMillis) {
+        if (sessionOffsetMillis != this.sessionOffsetMillis) {
+            this.sessionOffsetMillis = sessionOffsetMillis;
+            lastLower = Long.MIN_VALUE; // Recompute on the next call
+            Arrays.fill(labels, null);
+        }
+    }
+
+    // Label of a tick at the current granularity, formatted once and cached
+    public String label(long epochMillis) {
+        long key = epochMillis * 8 + granularity; // Granularities fit in three bits
+        int slot = slot(key);
+        if (labels[slot] == null || labelKeys[slot] != key) {
+            labelKeys[slot] = key;
+            // Dates are those of the trading day the session opening at the tick belongs to
+            long shown = granularity >= DAYS ? epochMillis - sessionOffsetMillis : epochMillis;
+            labels[slot] = FORMATS[granularity].format(BarSeries.toDateTime(shown));
+        }
+        return labels[slot];
+    }
+
+    // The tick as a LocalDateTime, cached so the axis sees the same instance across layouts
+    public LocalDateTime dateTime(long epochMillis) {
+        int slot = slot(epochMillis);
+        if (times[slot] == null || timeKeys[slot] != epochMillis) {
+            timeKeys[slot] = epochMillis;
+            times[slot] = BarSeries.toDateTime(epochMillis);
+        }
+        return times[slot];
+    }
+
+    private static int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 54) & (CACHE_SIZE - 1);
+    }
+}
@@ -0,0 +1,85 @@
+package com.jat.ctfxplotsplus;
+
+import java.time.Duration;
+
+/**
+ * A bar interval with its calendar alignment, used by {@link BarResampler} to roll base bars up.
+ *
+ * <p>A timeframe buckets UTC epoch-millisecond times into intervals of {@link #intervalMillis}, starting at
+ * {@link #offsetMillis} past the epoch. Minutes and hours align to the clock, days to midnight UTC and weeks to
+ * Monday midnight UTC. {@link #withSessionStart(Duration)} moves the boundary, e.g. to roll daily bars of a market
+ * whose session opens at 22:00 UTC.</p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * Timeframe fiveMinutes = Timeframe.M5;
+ * Timeframe fxDay = Timeframe.D1.withSessionStart(Duration.ofHours(22));
+ * long start = fxDay.bucketStart(epochMillis);
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public final class Timeframe {
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    private static final long MONDAY = 4 * DAY; // 1970-01-01 was a Thursday
+
+    public static final Timeframe M1 = minutes(1);
+    public static final Timeframe M5 = minutes(5);
+    public static final Timeframe M15 = minutes(15);
+    public static final Timeframe H1 = hours(1);
+    public static final Timeframe H4 = hours(4);
+    public static final Timeframe D1 = days(1);
+    public static final Timeframe W1 = weeks(1);
+
+    public final long intervalMillis;
+    public final long offsetMillis;
+    public final String label;
+
+    private Timeframe(long intervalMillis, long offsetMillis, String label) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Timeframe interval must be positive, got " + intervalMillis + " ms");
+        }
+        this.intervalMillis = intervalMillis;
+        this.offsetMillis = Math.floorMod(offsetMillis, intervalMillis);
+        this.label = label;
+    }
+
+    public static Timeframe minutes(int minutes) {return new Timeframe(minutes * MINUTE, 0, minutes + "m");}
+    public static Timeframe hours(int hours) {return new Timeframe(hours * HOUR, 0, hours + "h");}
+    public static Timeframe days(int days) {return new Timeframe(days * DAY, 0, days + "D");}
+    public static Timeframe weeks(int weeks) {return new Timeframe(weeks * 7 * DAY, MONDAY, weeks + "W");}
+
+    // Moves the bucket boundary by the given time past the usual alignment
+    public Timeframe withSessionStart(Duration sessionStart) {
+        return new Timeframe(intervalMillis, offsetMillis + sessionStart.toMillis(), label + "@" + sessionStart);
+    }
+
+    // Start of the bucket holding the given time
+    public long bucketStart(long epochMillis) {
+        return Math.floorDiv(epochMillis - offsetMillis, intervalMillis) * intervalMillis + offsetMillis;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Timeframe)) {
+            return false;
+        }
+        Timeframe other = (Timeframe) obj;
+        return intervalMillis == other.intervalMillis && offsetMillis == other.offsetMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(intervalMillis) * 31 + Long.hashCode(offsetMillis);
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
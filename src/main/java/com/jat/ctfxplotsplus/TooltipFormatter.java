@@ -0,0 +1,120 @@
+package com.jat.ctfxplotsplus;
+
+/**
+ * Builds the hover tooltip text of a bar into a reusable buffer without allocating.
+ *
+ * <p>Numbers are written with a fixed number of decimals, rounded half up on the decimal the double prints as,
+ * the same digits as {@code %.2f}. Times use the {@link java.time.LocalDateTime#toString()} layout. Both are
+ * written straight from primitives. The chart formats the tooltip of the hovered bar only, when the hovered bar
+ * changes.</p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * TooltipFormatter formatter = new TooltipFormatter();
+ * CharSequence text = formatter.format(bars, index);
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class TooltipFormatter {
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L};
+
+    private final StringBuilder buffer = new StringBuilder(128);
+
+    // Formats the tooltip of a bar, the returned buffer is reused by the next call
+    public CharSequence format(BarSource bars, int index) {
+        buffer.setLength(0);
+        buffer.append("DateTime: ");
+        appendDateTime(buffer, bars.time(index));
+        buffer.append("\nOpen: ");
+        appendFixed(buffer, bars.open(index), 2);
+        buffer.append("\nHigh: ");
+        appendFixed(buffer, bars.high(index), 2);
+        buffer.append("\nLow: ");
+        appendFixed(buffer, bars.low(index), 2);
+        buffer.append("\nClose: ");
+        appendFixed(buffer, bars.close(index), 2);
+        return buffer;
+    }
+
+    // Appends value with the given number of decimals (0 to 6)
+    public static void appendFixed(StringBuilder sb, double value, int decimals) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e12) {
+            sb.append(value); // Rare, the plain conversion is fine here
+            return;
+        }
+        long pow = POWERS_OF_TEN[decimals];
+        // %.2f rounds the decimal the double prints as, so 1.005 gives 1.01 although the double is just below it.
+        // The halfway decimal is compared as the double nearest to it, an exact integer division
+        double abs = Math.abs(value);
+        long scaled = (long) Math.floor(abs * pow);
+        if (abs >= (2.0 * scaled + 1) / (2.0 * pow)) {
+            scaled++;
+        }
+        if (value < 0 && scaled != 0) {
+            sb.append('-');
+        }
+        sb.append(scaled / pow);
+        if (decimals > 0) {
+            sb.append('.');
+            long fraction = scaled % pow;
+            for (long p = pow / 10; p > 0; p /= 10) {
+                sb.append((char) ('0' + (fraction / p) % 10));
+            }
+        }
+    }
+
+    // Appends a UTC epoch-millisecond time as yyyy-MM-ddTHH:mm[:ss[.SSS]]
+    public static void appendDateTime(StringBuilder sb, long epochMillis) {
+        long days = Math.floorDiv(epochMillis, 86_400_000L);
+        long millisOfDay = Math.floorMod(epochMillis, 86_400_000L);
+
+        // Civil date from days since 1970-01-01, proleptic Gregorian calendar
+        long z = days + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1_460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        int hour = (int) (millisOfDay / 3_600_000L);
+        int minute = (int) (millisOfDay / 60_000L % 60);
+        int second = (int) (millisOfDay / 1_000L % 60);
+        int millis = (int) (millisOfDay % 1_000L);
+
+        appendPadded(sb, year, 4);
+        sb.append('-');
+        appendPadded(sb, month, 2);
+        sb.append('-');
+        appendPadded(sb, day, 2);
+        sb.append('T');
+        appendPadded(sb, hour, 2);
+        sb.append(':');
+        appendPadded(sb, minute, 2);
+        if (second != 0 || millis != 0) {
+            sb.append(':');
+            appendPadded(sb, second, 2);
+            if (millis != 0) {
+                sb.append('.');
+                appendPadded(sb, millis, 3);
+            }
+        }
+    }
+
+    private static void appendPadded(StringBuilder sb, long value, int width) {
+        if (value < 0) {
+            sb.append('-');
+            value = -value;
+        }
+        for (long p = POWERS_OF_TEN[width - 1]; p > 1 && value < p; p /= 10) {
+            sb.append('0');
+        }
+        sb.append(value);
+    }
+}
@@ -0,0 +1,265 @@
+package com.jat.ctfxplotsplus;
+
+import javafx.scene.transform.Affine;
+
+/**
+ * Drag panning, cursor anchored wheel zoom and kinetic panning of the time axis of an {@link OHLCChart}.
+ *
+ * <p>A gesture moves a fractional window of bars: the bar under the mouse stays under it while dragging, and the
+ * bar under the cursor stays in place while zooming. Every pulse the axis is set to the whole-bar window closest to
+ * it and the cached candle layer is moved onto the axis with a single affine transform, plus the sub-bar remainder,
+ * which the axis is translated by as well. No candle is rasterized while the gesture runs, so a frame costs the same
+ * with a million bars as with a hundred. The layer is only redrawn mid-gesture once a quarter of the plot would be
+ * left uncovered, and in full with the price axis fitted to the bars shown once the gesture settles.</p>
+ *
+ * <p>Releasing a drag while the mouse still moves keeps the chart gliding, slowed down by {@link #friction}. The
+ * gesture settles when the glide stops and no input arrived for {@link #settleNanos}.</p>
+ *
+ * <p>Usage:
+ * <pre>
+ * {@code
+ * ViewportController viewport = new ViewportController(chart);
+ * chart.setOnMousePressed(event -> viewport.pressed(event.getX()));
+ * chart.setOnMouseDragged(event -> viewport.dragged(event.getX()));
+ * chart.setOnMouseReleased(event -> viewport.released());
+ * chart.setOnScroll(event -> viewport.zoom(event.getX(), event.getDeltaY()));
+ * // In the render callback
+ * flags |= viewport.step();
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class ViewportController {
+    public double zoomStep = 1.15; // Bars shown grow or shrink by this factor per wheel notch
+    public double wheelNotch = 40; // Scroll delta of one wheel notch
+    public double friction = 4; // Glide velocity falls by a factor e every 1 / friction seconds
+    public double minFlingSpeed = 200; // Pixels per second a release needs to start gliding
+    public long settleNanos = 150_000_000L;
+    public double maxUncovered = 0.25; // Share of the plot the moved layer may leave empty before a redraw
+
+    private static final double STOP_SPEED = 20; // Pixels per second below which a glide ends
+    private static final long FLING_WINDOW_NANOS = 80_000_000L; // A release later than this after a move is a stop
+
+    private final OHLCChart chart;
+    private final DateTimeAxis axis;
+    public final Affine layerTransform = new Affine(); // Maps the drawn candle layer onto the current window
+
+    private boolean active = false;
+    private boolean dragging = false;
+    private boolean rasterize = false; // The layer may be redrawn in the current frame
+    private double end; // One past the last bar shown, fractional while a gesture runs
+    private double count; // Bars shown
+    private double startEnd; // Window the gesture started from, a plain click leaves it unchanged
+    private double startCount;
+    private double anchorX;
+    private double anchorEnd;
+    private double dragBarPixels;
+    private double velocity = 0; // Pixels per second, positive when the chart moves right
+    private double lastX;
+    private long lastMoveNanos;
+    private long lastInputNanos;
+    private long lastStepNanos;
+
+    // Mapping the candle layer was last drawn with
+    private double drawnLowerMillis;
+    private double drawnScale;
+    private double drawnLowerIndex;
+    private double drawnIndexScale;
+
+    public ViewportController(OHLCChart chart) {
+        this.chart = chart;
+        this.axis = chart.xAxis;
+        chart.canvas.getTransforms().setAll(layerTransform);
+    }
+
+    public boolean isActive() {return active;}
+    public boolean isDragging() {return dragging;}
+
+    // True when the candle layer may be redrawn, i.e. outside gestures or when a gesture asked for it
+    public boolean allowsRaster() {
+        return !active || rasterize;
+    }
+
+    public void pressed(double x) {
+        if (axis.dataset == null || axis.dataset.isEmpty()) {
+            return;
+        }
+        begin();
+        dragging = true;
+        velocity = 0;
+        anchorX = x;
+        anchorEnd = end;
+        dragBarPixels = barPixels();
+        lastX = x;
+        lastMoveNanos = System.nanoTime();
+        lastInputNanos = lastMoveNanos;
+    }
+
+    public void dragged(double x) {
+        if (!dragging) {
+            return;
+        }
+        long now = System.nanoTime();
+        end = clampEnd(anchorEnd - (x - anchorX) / dragBarPixels);
+        double dt = (now - lastMoveNanos) / 1e9;
+        if (dt > 0) {
+            // Smoothed so a single jittery event does not decide the fling
+            velocity = 0.7 * ((x - lastX) / dt) + 0.3 * velocity;
+        }
+        lastX = x;
+        lastMoveNanos = now;
+        lastInputNanos = now;
+        chart.scheduler.requestRender(RenderScheduler.VIEWPORT);
+    }
+
+    public void released() {
+        if (!dragging) {
+            return;
+        }
+        dragging = false;
+        long now = System.nanoTime();
+        if (now - lastMoveNanos > FLING_WINDOW_NANOS || Math.abs(velocity) < minFlingSpeed) {
+            velocity = 0;
+        }
+        lastInputNanos = now;
+        lastStepNanos = now;
+        chart.scheduler.requestRender(RenderScheduler.VIEWPORT);
+    }
+
+    // Zooms by a scroll delta, a positive delta shows more bars, the bar under x stays under x
+    public void zoom(double x, double deltaY) {
+        if (axis.dataset == null || axis.dataset.size() < 2) {
+            return;
+        }
+        begin();
+        velocity = 0;
+        int size = axis.dataset.size();
+        double pixels = barPixels();
+        double anchor = end - count + (x - DateTimeAxis.CANDLE_OFFSET) / pixels;
+        double zoomed = Math.round(count * Math.pow(zoomStep, deltaY / wheelNotch));
+        if (zoomed == count) {
+            zoomed += Math.signum(deltaY); // Small zooms still move by a bar
+        }
+        count = Math.max(2, Math.min(size, zoomed));
+        end = clampEnd(anchor + count - (x - DateTimeAxis.CANDLE_OFFSET) / barPixels(count));
+        if (dragging) {
+            anchorX = lastX; // A drag continues from the zoomed window
+            anchorEnd = end;
+            dragBarPixels = barPixels();
+        }
+        lastInputNanos = System.nanoTime();
+        chart.scheduler.requestRender(RenderScheduler.VIEWPORT);
+    }
+
+    private void begin() {
+        if (active) {
+            return;
+        }
+        active = true;
+        end = axis.windowEnd();
+        count = axis.MAX_TICK_COUNT;
+        startEnd = end;
+        startCount = count;
+        lastStepNanos = System.nanoTime();
+        chart.gestureStarted();
+    }
+
+    /**
+     * Advances the gesture by one pulse and returns the render flags it needs: none while the cached layer is only
+     * moved, {@link RenderScheduler#CANDLES} when the layer has to be redrawn.
+     */
+    public int step() {
+        if (!active) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        double dt = Math.min(0.05, (now - lastStepNanos) / 1e9); // A stalled pulse does not throw the chart
+        lastStepNanos = now;
+        if (!dragging && velocity != 0) {
+            double glided = clampEnd(end - velocity * dt / barPixels());
+            velocity = glided == end ? 0 : velocity * Math.exp(-friction * dt);
+            end = glided;
+            if (Math.abs(velocity) < STOP_SPEED) {
+                velocity = 0;
+            }
+            lastInputNanos = now;
+        }
+
+        if (!dragging && velocity == 0 && now - lastInputNanos > settleNanos) {
+            end = Math.round(end);
+            applyWindow();
+            active = false;
+            rasterize = false;
+            chart.gestureSettled(end != startEnd || count != startCount);
+            return RenderScheduler.CANDLES;
+        }
+        applyWindow();
+        chart.scheduler.requestRender(RenderScheduler.VIEWPORT); // Keep pulsing until the gesture settles
+        if (uncovered() > maxUncovered * chart.canvas.getWidth()) {
+            rasterize = true;
+            return RenderScheduler.CANDLES;
+        }
+        return 0;
+    }
+
+    // Puts the axis on the whole-bar window closest to the fractional one and moves the layer onto it
+    private void applyWindow() {
+        int wholeEnd = (int) Math.round(end);
+        int wholeCount = (int) count;
+        if (wholeEnd != axis.windowEnd() || wholeCount != axis.MAX_TICK_COUNT) {
+            axis.setWindow(wholeEnd, wholeCount);
+        }
+        updateTransform();
+    }
+
+    // Called once the candle layer was drawn with the current axis mapping
+    public void layerDrawn() {
+        drawnLowerMillis = axis.getLowerMillis();
+        drawnScale = axis.getScale();
+        drawnLowerIndex = axis.getLowerIndex();
+        drawnIndexScale = axis.getIndexScale();
+        rasterize = false;
+        updateTransform();
+    }
+
+    private void updateTransform() {
+        // Remainder of the fractional window, the whole bars are already on the axis
+        double remainder = active ? (axis.windowEnd() - end) * barPixels() : 0;
+        double k;
+        double shift;
+        if (axis.isOrdinal()) {
+            k = drawnIndexScale == 0 ? 1 : axis.getIndexScale() / drawnIndexScale;
+            shift = (drawnLowerIndex - axis.getLowerIndex()) * axis.getIndexScale();
+        } else {
+            k = drawnScale == 0 ? 1 : axis.getScale() / drawnScale;
+            shift = (drawnLowerMillis - axis.getLowerMillis()) * axis.getScale();
+        }
+        // Candles are drawn at CANDLE_OFFSET past their axis position, the scale pivots on the axis origin
+        layerTransform.setMxx(k);
+        layerTransform.setTx(DateTimeAxis.CANDLE_OFFSET * (1 - k) + shift + remainder);
+        axis.setTranslateX(remainder);
+    }
+
+    // Width of the plot the moved layer leaves empty
+    private double uncovered() {
+        double width = chart.canvas.getWidth();
+        double left = layerTransform.getTx();
+        double right = left + layerTransform.getMxx() * width;
+        return Math.max(0, left) + Math.max(0, width - right);
+    }
+
+    private double clampEnd(double value) {
+        return Math.max(count, Math.min(axis.dataset.size(), value));
+    }
+
+    private double barPixels() {
+        return barPixels(count);
+    }
+
+    // Pixels between neighbouring bars for a window of count bars, an average when the time axis has gaps
+    private double barPixels(double count) {
+        return Math.max(1e-9, axis.getWidth() / Math.max(1, count - 1));
+    }
+}
@@ -0,0 +1,111 @@
+package com.jat.ctfxplotsplus;
+
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.stage.Stage;
+
+import java.util.Random;
+
+/**
+ * Frame-time benchmark of the candle drawing paths on 5k visible candles.
+ *
+ * <p>Each frame clears a canvas, draws every candle and takes a snapshot so the queued canvas commands are
+ * actually rasterized. The per-candle path sets fill, stroke and line width for each candle like the original
+ * chart did; the batched path goes through {@link CandleRenderer}. Average frame times are printed to stdout.</p>
+ *
+ * <p>Lives in the test sources so it is not part of the library jar. Usage, after {@code mvn test-compile}:
+ * <pre>
+ * {@code
+ * java --module-path <javafx-sdk>/lib --add-modules javafx.controls -cp target/classes:target/test-classes com.jat.ctfxplotsplus.CandleBenchmark
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Aidan Korczynski
+ */
+public class CandleBenchmark extends Application {
+    private static final int CANDLES = 5_000;
+    private static final int WARMUP_FRAMES = 50;
+    private static final int FRAMES = 200;
+    private static final double WIDTH = 1600;
+    private static final double HEIGHT = 600;
+
+    private final double[] x = new double[CANDLES];
+    private final double[] bodyY = new double[CANDLES];
+    private final double[] bodyHeight = new double[CANDLES];
+    private final double[] highY = new double[CANDLES];
+    private final double[] lowY = new double[CANDLES];
+    private final boolean[] bullish = new boolean[CANDLES];
+
+    @Override
+    public void start(Stage stage) {
+        generateCandles();
+        Canvas canvas = new Canvas(WIDTH, HEIGHT);
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        CandleRenderer renderer = new CandleRenderer();
+
+        double perCandle = measure(canvas, () -> drawPerCandle(gc));
+        double batched = measure(canvas, () -> {
+            renderer.begin(1);
+            for (int i = 0; i < CANDLES; i++) {
+                renderer.add(i, x[i], bodyY[i], bodyHeight[i], highY[i], lowY[i], bullish[i]);
+            }
+            renderer.render(gc);
+        });
+
+        System.out.printf("%d candles, per-candle state: %.3f ms/frame%n", CANDLES, perCandle);
+        System.out.printf("%d candles, batched renderer: %.3f ms/frame%n", CANDLES, batched);
+        Platform.exit();
+    }
+
+    private void generateCandles() {
+        Random random = new Random(42);
+        double price = HEIGHT / 2;
+        for (int i = 0; i < CANDLES; i++) {
+            double open = price;
+            double close = Math.max(20, Math.min(HEIGHT - 20, open + random.nextGaussian() * 4));
+            x[i] = i * (WIDTH / CANDLES);
+            bodyY[i] = Math.min(open, close);
+            bodyHeight[i] = Math.abs(open - close);
+            highY[i] = bodyY[i] - random.nextDouble() * 6;
+            lowY[i] = bodyY[i] + bodyHeight[i] + random.nextDouble() * 6;
+            bullish[i] = close <= open; // Screen y grows downwards
+            price = close;
+        }
+    }
+
+    // The reference path, one state change per candle as drawCandleStick used to do
+    private void drawPerCandle(GraphicsContext gc) {
+        for (int i = 0; i < CANDLES; i++) {
+            Color color = bullish[i] ? Color.GREEN : Color.RED;
+            gc.setFill(color);
+            gc.setStroke(color);
+            gc.setLineWidth(1);
+            gc.fillRect(x[i] - 0.5, bodyY[i], 1, bodyHeight[i]);
+            gc.strokeLine(x[i], highY[i], x[i], bodyY[i]);
+            gc.strokeLine(x[i], lowY[i], x[i], bodyY[i] + bodyHeight[i]);
+        }
+    }
+
+    private double measure(Canvas canvas, Runnable draw) {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        long total = 0;
+        for (int frame = 0; frame < WARMUP_FRAMES + FRAMES; frame++) {
+            long start = System.nanoTime();
+            gc.clearRect(0, 0, WIDTH, HEIGHT);
+            draw.run();
+            canvas.snapshot(null, null); // Forces the queued commands to be rasterized
+            if (frame >= WARMUP_FRAMES) {
+                total += System.nanoTime() - start;
+            }
+        }
+        return total / (FRAMES * 1_000_000.0);
+    }
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+}